@@ -0,0 +1,325 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Run;
+import hudson.scm.ChangeLogSet;
+import hudson.util.FormValidation;
+import jenkins.scm.RunWithSCM;
+import org.apache.commons.lang.StringUtils;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scales the scan of a pull request or feature branch build to the change it contains. The files affected
+ * by the SCM changes of the build decide how it is scanned:
+ * <ul>
+ *     <li>if none of them is a source file, the scan is skipped</li>
+ *     <li>if modules are mapped to build IDs and none of the changed source files belongs to the build ID
+ *     being scanned, the scan is skipped, so only the affected modules are scanned</li>
+ *     <li>otherwise the scan is reduced: it is run as a quick scan and/or with the filter of the scope</li>
+ * </ul>
+ * Builds of a default branch, and builds whose changes are not known (such as the first build of a
+ * pull request), always perform the complete scan as configured.
+ */
+public class ChangeScope extends AbstractDescribableImpl<ChangeScope> implements Serializable {
+
+    private static final long serialVersionUID = -4127718365062419254L;
+
+    static final String DEFAULT_BRANCHES = "master, main";
+
+    /**
+     * The files analyzed by Fortify SCA, including the configuration files it reads for frameworks
+     */
+    static final String DEFAULT_SOURCE_PATTERNS = "**/*.java, **/*.jsp, **/*.jspx, **/*.tag, **/*.js, **/*.jsx, "
+            + "**/*.ts, **/*.tsx, **/*.vue, **/*.html, **/*.htm, **/*.xml, **/*.properties, **/*.json, **/*.yaml, "
+            + "**/*.yml, **/*.cs, **/*.cshtml, **/*.aspx, **/*.ascx, **/*.config, **/*.vb, **/*.c, **/*.cc, "
+            + "**/*.cpp, **/*.cxx, **/*.h, **/*.hpp, **/*.m, **/*.mm, **/*.swift, **/*.kt, **/*.scala, "
+            + "**/*.groovy, **/*.gradle, **/*.py, **/*.rb, **/*.php, **/*.go, **/*.sql, **/*.pks, **/*.pkb, "
+            + "**/*.cls, **/*.trigger, **/*.page, **/*.component, **/*.abap, **/*.cob, **/*.cbl, **/Dockerfile";
+
+    /**
+     * How a build is scanned.
+     */
+    enum Decision {
+        /** The complete scan as configured */
+        FULL,
+        /** A quick and/or filtered scan of the change */
+        REDUCED,
+        /** No scan, the change does not affect the sources of the build ID */
+        SKIP
+    }
+
+    private String sourcePatterns;
+    private String modules;
+    private String defaultBranches = DEFAULT_BRANCHES;
+    private boolean quick = true;
+    private String filter;
+
+    @DataBoundConstructor
+    public ChangeScope() {
+    }
+
+    /**
+     * Retrieves the patterns of the files that are scanned, or null to use the default patterns.
+     */
+    public String getSourcePatterns() {
+        return sourcePatterns;
+    }
+
+    @DataBoundSetter
+    public void setSourcePatterns(String sourcePatterns) {
+        this.sourcePatterns = StringUtils.trimToNull(sourcePatterns);
+    }
+
+    /**
+     * Retrieves the mapping of module paths to build IDs, one <tt>path=buildId</tt> per line.
+     */
+    public String getModules() {
+        return modules;
+    }
+
+    @DataBoundSetter
+    public void setModules(String modules) {
+        this.modules = modules;
+    }
+
+    /**
+     * Retrieves the branches whose builds always perform the complete scan.
+     */
+    public String getDefaultBranches() {
+        return defaultBranches;
+    }
+
+    @DataBoundSetter
+    public void setDefaultBranches(String defaultBranches) {
+        this.defaultBranches = defaultBranches;
+    }
+
+    /**
+     * Retrieves if reduced scans are quick scans.
+     */
+    public boolean getQuick() {
+        return quick;
+    }
+
+    @DataBoundSetter
+    public void setQuick(boolean quick) {
+        this.quick = quick;
+    }
+
+    /**
+     * Retrieves the filter applied to reduced scans instead of the filter of the build step, or null.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    @DataBoundSetter
+    public void setFilter(String filter) {
+        this.filter = StringUtils.trimToNull(filter);
+    }
+
+    /**
+     * Decides how the build is scanned from the branch it builds and the files affected by its SCM changes.
+     * @param build the build
+     * @param env the environment of the build
+     * @param buildId the expanded build ID being scanned
+     * @param logger the logger the decision is explained on
+     * @return the decision
+     */
+    Decision decide(Run<?, ?> build, EnvVars env, String buildId, ConsoleLogger logger) {
+        final String branch = getBranch(env);
+        if (branch == null) {
+            logger.log(Messages.changeScope_unknownBranch());
+            return Decision.FULL;
+        }
+        if (StringUtils.isBlank(env.get("CHANGE_ID")) && isDefaultBranch(branch)) {
+            logger.log(Messages.changeScope_defaultBranch(branch));
+            return Decision.FULL;
+        }
+        final List<String> paths = getAffectedPaths(build);
+        if (paths.isEmpty()) {
+            logger.log(Messages.changeScope_noChanges());
+            return Decision.FULL;
+        }
+        final List<String> patterns = split(StringUtils.defaultString(sourcePatterns, DEFAULT_SOURCE_PATTERNS));
+        final List<String> sources = new ArrayList<String>();
+        for (String path : paths) {
+            if (matches(patterns, path)) {
+                sources.add(path);
+            }
+        }
+        if (sources.isEmpty()) {
+            logger.log(Messages.changeScope_noSourceChanges(paths.size()));
+            return Decision.SKIP;
+        }
+        final Map<String, String> mapping = parseModules(modules);
+        if (!mapping.isEmpty() && StringUtils.isNotBlank(buildId) && mapping.containsValue(buildId.trim())) {
+            final Set<String> affected = new LinkedHashSet<String>();
+            for (String source : sources) {
+                final Set<String> ids = getBuildIds(mapping, source);
+                if (ids.isEmpty()) {
+                    // A source outside of every module may be shared by all of them
+                    affected.clear();
+                    break;
+                }
+                affected.addAll(ids);
+            }
+            if (!affected.isEmpty() && !affected.contains(buildId.trim())) {
+                logger.log(Messages.changeScope_moduleUnchanged(sources.size(), buildId.trim(), StringUtils.join(affected, ", ")));
+                return Decision.SKIP;
+            }
+        }
+        logger.log(Messages.changeScope_reduced(sources.size(), paths.size()));
+        return Decision.REDUCED;
+    }
+
+    /**
+     * Returns the branch the build is for, as set by multibranch projects or the Git plugin, or null if it is not known.
+     */
+    private static String getBranch(EnvVars env) {
+        final String branch = StringUtils.defaultIfBlank(env.get("BRANCH_NAME"), env.get("GIT_BRANCH"));
+        return StringUtils.trimToNull(branch);
+    }
+
+    /**
+     * Returns if the branch is one of the default branches. Remote and ref prefixes, such as
+     * <tt>origin/master</tt> or <tt>refs/heads/master</tt>, are ignored.
+     */
+    private boolean isDefaultBranch(String branch) {
+        for (String candidate : split(StringUtils.defaultString(defaultBranches, DEFAULT_BRANCHES))) {
+            if (branch.equals(candidate) || branch.endsWith("/" + candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the paths of the files affected by the SCM changes of the build, relative to the repository root.
+     */
+    static List<String> getAffectedPaths(Run<?, ?> build) {
+        final Set<String> paths = new LinkedHashSet<String>();
+        if (build instanceof RunWithSCM) {
+            for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : ((RunWithSCM<?, ?>) build).getChangeSets()) {
+                for (ChangeLogSet.Entry entry : changeSet) {
+                    for (String path : entry.getAffectedPaths()) {
+                        paths.add(normalize(path));
+                    }
+                }
+            }
+        }
+        return new ArrayList<String>(paths);
+    }
+
+    /**
+     * Returns the build IDs of the modules containing the path.
+     */
+    private static Set<String> getBuildIds(Map<String, String> mapping, String path) {
+        final Set<String> ids = new LinkedHashSet<String>();
+        for (Map.Entry<String, String> module : mapping.entrySet()) {
+            if (path.startsWith(module.getKey())) {
+                ids.add(module.getValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Parses the module mapping into module paths, always ending with a slash, and their build IDs.
+     * Lines without a path or build ID are ignored.
+     */
+    static Map<String, String> parseModules(String modules) {
+        final Map<String, String> mapping = new LinkedHashMap<String, String>();
+        if (StringUtils.isBlank(modules)) {
+            return mapping;
+        }
+        for (String line : modules.split("\r|\n")) {
+            final int separator = line.lastIndexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            final String path = StringUtils.strip(normalize(line.substring(0, separator).trim()), "/");
+            final String buildId = line.substring(separator + 1).trim();
+            if (StringUtils.isNotEmpty(path) && StringUtils.isNotEmpty(buildId)) {
+                mapping.put(path + "/", buildId);
+            }
+        }
+        return mapping;
+    }
+
+    private static boolean matches(List<String> patterns, String path) {
+        final String file = path.replace('/', File.separatorChar);
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern.replace('/', File.separatorChar), file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String path) {
+        return StringUtils.removeStart(path.replace('\\', '/'), "/");
+    }
+
+    private static List<String> split(String value) {
+        final List<String> values = new ArrayList<String>();
+        for (String item : value.split("\t|\n|\r|,")) {
+            if (StringUtils.isNotBlank(item)) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
+    @Extension @Symbol("changeScope")
+    public static class DescriptorImpl extends Descriptor<ChangeScope> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.ChangeScope_DisplayName();
+        }
+
+        public FormValidation doCheckModules(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            for (String line : value.split("\r|\n")) {
+                if (StringUtils.isNotBlank(line) && parseModules(line).isEmpty()) {
+                    return FormValidation.error(Messages.changeScope_invalidModule(line.trim()));
+                }
+            }
+            return FormValidation.ok();
+        }
+    }
+
+}
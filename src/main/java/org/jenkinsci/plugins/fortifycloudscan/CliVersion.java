@@ -0,0 +1,145 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.SystemUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines the version of the cloudscan CLI installed on a node. The executable is resolved to
+ * a file (searching the PATH of the build if necessary) and the output of <tt>cloudscan -version</tt>
+ * is cached in the JVM of the node, keyed by the path, size and modification time of the executable.
+ * The CLI is therefore only launched again once it has been replaced.
+ */
+final class CliVersion {
+
+    private static final long PROBE_TIMEOUT_SECONDS = 120;
+
+    /**
+     * The versions detected on this node. Agents have their own copy as the cache is only ever accessed on the node.
+     */
+    private static final ConcurrentMap<String, String> VERSIONS = new ConcurrentHashMap<String, String>();
+
+    private CliVersion() {}
+
+    /**
+     * Returns the file the specified command refers to, or null if it cannot be found.
+     * @param command the path to the executable, or its name if it is on the PATH
+     * @param path the PATH of the build
+     */
+    static File resolve(String command, String path) {
+        final File file = new File(command);
+        if (file.isAbsolute() || command.contains(File.separator) || command.contains("/")) {
+            return file.isFile() ? file : null;
+        }
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+        final List<String> names = new ArrayList<String>();
+        names.add(command);
+        if (SystemUtils.IS_OS_WINDOWS) {
+            for (String extension : new String[] {".bat", ".cmd", ".exe"}) {
+                names.add(command + extension);
+            }
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            if (StringUtils.isBlank(directory)) {
+                continue;
+            }
+            for (String name : names) {
+                final File candidate = new File(directory.trim(), name);
+                if (candidate.isFile()) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the output of <tt>cloudscan -version</tt> for the specified executable. Must be called on the
+     * node cloudscan is installed on. The CLI is only launched if the version of the same executable has
+     * not been determined before.
+     * @param command the path to the cloudscan executable, or its name if it is on the PATH
+     * @param path the PATH of the build, used to locate the executable
+     * @return the version of cloudscan
+     * @throws IOException if cloudscan cannot be launched or fails
+     */
+    static String detect(String command, String path) throws IOException {
+        final String searchPath = (path != null) ? path : System.getenv("PATH");
+        final File executable = resolve(command, searchPath);
+        if (executable == null) {
+            // Nothing to key a cache entry on, launch it by name every time
+            return launch(command, searchPath);
+        }
+        final String key = executable.getCanonicalPath() + "|" + executable.length() + "|" + executable.lastModified();
+        String version = VERSIONS.get(key);
+        if (version == null) {
+            version = launch(executable.getAbsolutePath(), searchPath);
+            VERSIONS.put(key, version);
+        }
+        return version;
+    }
+
+    /**
+     * Launches <tt>cloudscan -version</tt> with the environment of the node and the PATH of the build.
+     */
+    private static String launch(String executable, String path) throws IOException {
+        final List<String> commandLine = new ArrayList<String>();
+        if (SystemUtils.IS_OS_WINDOWS) {
+            commandLine.add("cmd");
+            commandLine.add("/c");
+        }
+        commandLine.add(executable);
+        commandLine.add("-version");
+        final File output = File.createTempFile("cloudscan-version", ".txt");
+        final ProcessBuilder builder = new ProcessBuilder(commandLine).redirectErrorStream(true).redirectOutput(output);
+        if (path != null) {
+            builder.environment().put(SystemUtils.IS_OS_WINDOWS ? "Path" : "PATH", path);
+        }
+        Process process = null;
+        try {
+            process = builder.start();
+            process.getOutputStream().close();
+            if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("cloudscan -version did not complete within " + PROBE_TIMEOUT_SECONDS + " seconds");
+            }
+            final String version = FileUtils.readFileToString(output, Charset.defaultCharset()).trim();
+            if (process.exitValue() != 0) {
+                throw new IOException("cloudscan -version failed with exit code " + process.exitValue() + ": " + version);
+            }
+            return version;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while determining the version of cloudscan", e);
+        } finally {
+            if (process != null) {
+                process.destroy();
+            }
+            FileUtils.deleteQuietly(output);
+        }
+    }
+
+}
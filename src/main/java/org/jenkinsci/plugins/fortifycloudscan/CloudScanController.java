@@ -0,0 +1,131 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Queries the CloudScan controller for the state of submitted jobs. The status of a job is
+ * retrieved as JSON from <tt>&lt;controller&gt;/rest/v2/job/&lt;token&gt;/status</tt> so that no agent
+ * (and no cloudscan installation) is needed to track a job. The path can be changed with the system property
+ * <tt>org.jenkinsci.plugins.fortifycloudscan.CloudScanController.statusPath</tt> for controllers
+ * that expose it elsewhere.
+ */
+public class CloudScanController {
+
+    static final String STATUS_PATH = System.getProperty(CloudScanController.class.getName() + ".statusPath",
+            "/rest/v2/job/{token}/status");
+
+    private final String controllerUrl;
+
+    /**
+     * Constructs a new CloudScanController.
+     * @param controllerUrl the URL to the CloudScan controller
+     */
+    public CloudScanController(String controllerUrl) {
+        this.controllerUrl = controllerUrl.replaceAll("/$", "");
+    }
+
+    /**
+     * Returns the state of the job with the specified token (e.g. PENDING, SCAN_RUNNING, UPLOAD_COMPLETED).
+     * @param token the job token returned by the controller when the job was submitted
+     * @return the state of the job in upper case
+     * @throws IOException if the controller cannot be reached or does not know the job
+     */
+    public String getJobState(String token) throws IOException {
+        final HttpGet get = new HttpGet(controllerUrl + STATUS_PATH.replace("{token}", token));
+        get.setHeader("Accept", "application/json");
+        final HttpClientContext context = HttpClientContext.create();
+        try (CloseableHttpResponse response = HttpTransport.getInstance().getClient().execute(get, context)) {
+            PluginMetrics.get().recordConnection(HttpTransport.isConnectionReused(context));
+            final int status = response.getStatusLine().getStatusCode();
+            final String body = (response.getEntity() != null)
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException("The CloudScan controller returned HTTP status " + status + " for job " + token);
+            }
+            return parseState(body);
+        }
+    }
+
+    /**
+     * Extracts the job state from the status document returned by the controller.
+     */
+    static String parseState(String body) throws IOException {
+        try {
+            final JSONObject json = JSONObject.fromObject(body);
+            for (String key: new String[] {"jobState", "state", "status"}) {
+                final String state = json.optString(key, null);
+                if (StringUtils.isNotBlank(state)) {
+                    return state.trim().toUpperCase(Locale.ENGLISH);
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("The CloudScan controller returned an invalid job status: " + StringUtils.abbreviate(body, 200), e);
+        }
+        throw new IOException("The CloudScan controller did not return a job state: " + StringUtils.abbreviate(body, 200));
+    }
+
+    /**
+     * Returns true if a job in the specified state will not change state anymore.
+     */
+    public static boolean isFinished(String state, boolean upload) {
+        return isFailed(state) || isCompleted(state, upload);
+    }
+
+    /**
+     * Returns the phase of a job in the specified state.
+     */
+    public static ScanPhase getPhase(String state, boolean upload) {
+        if (isFinished(state, upload)) {
+            return ScanPhase.FINISHED;
+        }
+        if (state.contains("QUEUE") || state.contains("PENDING")) {
+            return ScanPhase.QUEUED;
+        }
+        return ScanPhase.SCAN;
+    }
+
+    /**
+     * Returns true if the specified state indicates the job failed or was canceled.
+     */
+    public static boolean isFailed(String state) {
+        return state.contains("FAIL") || state.contains("FAULT") || state.contains("CANCEL");
+    }
+
+    /**
+     * Returns true if the job completed. Jobs that upload their results to SSC are not
+     * complete until the upload has completed.
+     */
+    public static boolean isCompleted(String state, boolean upload) {
+        if ("COMPLETED".equals(state) || "UPLOAD_COMPLETED".equals(state)) {
+            return true;
+        }
+        return !upload && "SCAN_COMPLETED".equals(state);
+    }
+
+}
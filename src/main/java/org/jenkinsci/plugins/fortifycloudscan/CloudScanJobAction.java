@@ -0,0 +1,81 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.Action;
+
+/**
+ * Records a job submitted to the CloudScan controller by a build, so that its completion can
+ * be tracked after the build step (and the executor it ran on) has been released.
+ */
+public class CloudScanJobAction implements Action {
+
+    private final String token;
+    private final String controllerUrl;
+    private final boolean upload;
+    private volatile String state;
+
+    /**
+     * Constructs a new CloudScanJobAction.
+     * @param token the job token returned by the controller
+     * @param controllerUrl the URL to the controller, or null if it has to be retrieved from SSC
+     * @param upload true if the results of the job are uploaded to SSC
+     */
+    public CloudScanJobAction(String token, String controllerUrl, boolean upload) {
+        this.token = token;
+        this.controllerUrl = controllerUrl;
+        this.upload = upload;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getControllerUrl() {
+        return controllerUrl;
+    }
+
+    public boolean isUpload() {
+        return upload;
+    }
+
+    /**
+     * Returns the last known state of the job, or null if it has not been polled yet.
+     */
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.CloudScanJobAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+}
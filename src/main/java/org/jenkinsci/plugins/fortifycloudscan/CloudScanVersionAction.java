@@ -0,0 +1,61 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.Action;
+
+/**
+ * Records the version of the cloudscan CLI a build used and the node it ran on.
+ */
+public class CloudScanVersionAction implements Action {
+
+    private final String version;
+    private final String node;
+
+    /**
+     * Constructs a new CloudScanVersionAction.
+     * @param version the output of <tt>cloudscan -version</tt>
+     * @param node the name of the node cloudscan ran on
+     */
+    public CloudScanVersionAction(String version, String node) {
+        this.version = version;
+        this.node = node;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.CloudScanVersionAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+}
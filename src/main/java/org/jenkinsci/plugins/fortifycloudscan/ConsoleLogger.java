@@ -17,16 +17,86 @@ package org.jenkinsci.plugins.fortifycloudscan;
 
 import hudson.console.LineTransformationOutputStream;
 import hudson.model.TaskListener;
+import jenkins.util.Timer;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 public class ConsoleLogger extends LineTransformationOutputStream {
 
     private static final String PREFIX = "[" + FortifyCloudScanPlugin.PLUGIN_NAME + "] ";
+
+    /**
+     * Matches the line cloudscan prints once a job has been submitted to the controller
+     */
+    private static final Pattern JOB_TOKEN = Pattern.compile("(?i)(?<![\\w-])token:?\\s+([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})");
+
+    /**
+     * Matches the status lines cloudscan prints while it waits for a job (when started with <tt>-block</tt>)
+     */
+    private static final Map<ScanPhase, Pattern> STATUS_LINES = new EnumMap<ScanPhase, Pattern>(ScanPhase.class);
+
+    static {
+        STATUS_LINES.put(ScanPhase.QUEUED, Pattern.compile(
+                "(?i)(?:status|state)\\W+(?:pending|queued)\\b|\\bjob (?:is )?queued\\b"));
+        STATUS_LINES.put(ScanPhase.SCAN, Pattern.compile(
+                "(?i)(?:status|state)\\W+(?:scan_)?running\\b|\\bscan(?:ning)? (?:started|in progress)\\b|\\bassigned to sensor\\b"));
+        STATUS_LINES.put(ScanPhase.FINISHED, Pattern.compile(
+                "(?i)(?:status|state)\\W+(?:scan_completed|upload_completed|completed|faulted|failed|canceled)\\b"
+                        + "|\\b(?:job|scan) (?:has )?(?:finished|completed)\\b"));
+    }
+
     private transient final PrintStream logger;
+    private final String label;
+    private final String prefix;
+    private volatile String jobToken;
+    private final ScanTimeline timeline;
+    private volatile LogCondenser condenser;
+    private transient ScheduledFuture<?> flushTask;
+    private transient volatile OutputStream rawLog;
+    private transient volatile Runnable submitted;
 
     public ConsoleLogger(TaskListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * Creates a logger whose lines are additionally prefixed with the specified label. Used to
+     * tell apart the output of several scans writing to the same build log concurrently.
+     * @param listener the listener to log to
+     * @param label the label to prefix each line with, or null for no label
+     */
+    public ConsoleLogger(TaskListener listener, String label) {
         this.logger = listener.getLogger();
+        this.label = label;
+        this.prefix = (label != null) ? PREFIX + "[" + label + "] " : PREFIX;
+        this.timeline = new ScanTimeline(label);
+    }
+
+    /**
+     * Runs the specified callback once cloudscan reports that the controller has accepted the job.
+     * @param callback the callback, run at most once
+     */
+    void onSubmitted(Runnable callback) {
+        this.submitted = callback;
+    }
+
+    /**
+     * Returns the label lines are prefixed with, or null if there is none.
+     */
+    public String getLabel() {
+        return label;
     }
 
     /**
@@ -34,7 +104,80 @@ public class ConsoleLogger extends LineTransformationOutputStream {
      * @param message The message to log
      */
     protected void log(String message) {
-        logger.println(PREFIX + message.replaceAll("\\n", "\n" + PREFIX));
+        final LogCondenser current = condenser;
+        if (current != null) {
+            // Keep the order of the output, cloudscan's buffered lines precede the message
+            current.flush();
+        }
+        if (message.indexOf('\n') < 0) {
+            logger.println(prefix + message);
+            return;
+        }
+        final StringBuilder sb = new StringBuilder(message.length() + 4 * prefix.length());
+        sb.append(prefix);
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            sb.append(c);
+            if (c == '\n') {
+                sb.append(prefix);
+            }
+        }
+        logger.println(sb);
+    }
+
+    /**
+     * Condenses the output written to this logger from now on: lines are written to the build log
+     * in blocks and lines that keep repeating are collapsed into periodic summaries. Buffered lines
+     * are written at least every few seconds. {@link #finish()} must be called once all output has
+     * been written.
+     */
+    public synchronized void condense() {
+        if (condenser == null) {
+            final LogCondenser created = new LogCondenser(logger, prefix);
+            flushTask = Timer.get().scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    created.flush();
+                }
+            }, 2, 2, TimeUnit.SECONDS);
+            condenser = created;
+        }
+    }
+
+    /**
+     * Additionally writes the complete output, as written to this logger from now on, to the specified
+     * file compressed with gzip. The file is complete once {@link #finish()} has been called.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be created
+     */
+    public synchronized void keepRawLog(File file) throws IOException {
+        rawLog = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)), 8192);
+    }
+
+    /**
+     * Writes out everything that is still buffered and closes the raw log. Output written afterwards
+     * is written to the build log without being condensed.
+     * @throws IOException if the raw log cannot be written
+     */
+    public void finish() throws IOException {
+        forceEol();
+        final LogCondenser current;
+        final OutputStream raw;
+        synchronized (this) {
+            current = condenser;
+            raw = rawLog;
+            condenser = null;
+            rawLog = null;
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        }
+        if (current != null) {
+            current.finish();
+        }
+        if (raw != null) {
+            raw.close();
+        }
     }
 
     /**
@@ -42,8 +185,62 @@ public class ConsoleLogger extends LineTransformationOutputStream {
      */
     @Override
     protected void eol(byte[] b, int len) throws IOException {
-        logger.append(PREFIX);
-        logger.write(b, 0, len);
+        final OutputStream raw = rawLog;
+        if (raw != null) {
+            raw.write(b, 0, len);
+        }
+        final String line = new String(b, 0, len, Charset.defaultCharset());
+        final LogCondenser current = condenser;
+        if (current != null) {
+            current.line(trimEol(line));
+        } else {
+            // Prefix and line are written together, other loggers may share the same stream
+            synchronized (logger) {
+                logger.append(prefix);
+                logger.write(b, 0, len);
+            }
+        }
+        final Matcher matcher = JOB_TOKEN.matcher(line);
+        if (matcher.find()) {
+            jobToken = matcher.group(1);
+            timeline.setToken(jobToken);
+            timeline.enter(ScanPhase.QUEUED);
+            final Runnable callback = submitted;
+            if (callback != null) {
+                submitted = null;
+                callback.run();
+            }
+            return;
+        }
+        // Only the phases after the current one can still be entered
+        final ScanPhase current = timeline.getPhase();
+        for (Map.Entry<ScanPhase, Pattern> status : STATUS_LINES.entrySet()) {
+            if ((current == null || status.getKey().compareTo(current) > 0) && status.getValue().matcher(line).find()) {
+                timeline.enter(status.getKey());
+            }
+        }
+    }
+
+    private static String trimEol(String line) {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * Returns the timeline of the job, advanced by the status lines cloudscan printed.
+     */
+    public ScanTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Returns the token of the last job cloudscan reported as submitted, or null if no job was submitted.
+     */
+    public String getJobToken() {
+        return jobToken;
     }
 
 }
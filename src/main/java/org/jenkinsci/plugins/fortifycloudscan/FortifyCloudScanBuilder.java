@@ -21,33 +21,46 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
-import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Computer;
+import hudson.model.Item;
 import hudson.model.Result;
 import hudson.model.Run;
+import hudson.model.StreamBuildListener;
 import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
-import jenkins.security.MasterToSlaveCallable;
+import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.fortifycloudscan.util.CommandUtil;
+import org.jenkinsci.plugins.fortifycloudscan.util.VariableExpander;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -63,6 +76,11 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
 
     private static final long serialVersionUID = 5441945995905689815L;
 
+    /**
+     * The environment variables containing the revision checked out by the build, in order of preference
+     */
+    private static final String[] REVISION_VARIABLES = {"GIT_COMMIT", "SVN_REVISION", "MERCURIAL_REVISION"};
+
     private final String buildId;
     private final boolean useAutoHeap;
     private final String xmx;
@@ -83,7 +101,14 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
     private final String rules;
     private final boolean useParallelAnalysis;
     private final String sensorPool;
-
+    private boolean condensedLog;
+    private boolean archiveRawLog;
+    private boolean retrieveFpr;
+    private SscQualityGate qualityGate;
+    private boolean skipUnchanged;
+    private String fingerprintExcludes;
+    private boolean reuseResults;
+    private ChangeScope changeScope;
 
     @DataBoundConstructor // Fields in config.jelly must match the parameter names
     public FortifyCloudScanBuilder(String buildId, Boolean useAutoHeap, String xmx, String rmiWorkerMaxHeap,
@@ -279,6 +304,114 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
         return sensorPool;
     }
 
+    /**
+     * Retrieves if the output of cloudscan is condensed. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public boolean getCondensedLog() {
+        return condensedLog;
+    }
+
+    @DataBoundSetter
+    public void setCondensedLog(boolean condensedLog) {
+        this.condensedLog = condensedLog;
+    }
+
+    /**
+     * Retrieves if the complete output of a condensed log is archived. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public boolean getArchiveRawLog() {
+        return archiveRawLog;
+    }
+
+    @DataBoundSetter
+    public void setArchiveRawLog(boolean archiveRawLog) {
+        this.archiveRawLog = archiveRawLog;
+    }
+
+    /**
+     * Retrieves if the FPR is retrieved and summarized once the scan has completed. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public boolean getRetrieveFpr() {
+        return retrieveFpr;
+    }
+
+    @DataBoundSetter
+    public void setRetrieveFpr(boolean retrieveFpr) {
+        this.retrieveFpr = retrieveFpr;
+    }
+
+    /**
+     * Retrieves the quality gate evaluated against the issues on SSC once the scan has been processed,
+     * or null if there is none. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public SscQualityGate getQualityGate() {
+        return qualityGate;
+    }
+
+    @DataBoundSetter
+    public void setQualityGate(SscQualityGate qualityGate) {
+        this.qualityGate = qualityGate;
+    }
+
+    /**
+     * Retrieves if the scan is skipped when its inputs are unchanged since the last successful scan.
+     * This is a per-build config item. This method must match the value in <tt>config.jelly</tt>.
+     */
+    public boolean getSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    @DataBoundSetter
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Retrieves the patterns of the workspace files that are ignored when deciding whether the inputs
+     * of the scan have changed. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public String getFingerprintExcludes() {
+        return fingerprintExcludes;
+    }
+
+    @DataBoundSetter
+    public void setFingerprintExcludes(String fingerprintExcludes) {
+        this.fingerprintExcludes = fingerprintExcludes;
+    }
+
+    /**
+     * Retrieves if the results of a previous scan of the same SCM revision with the same settings, by any job,
+     * are reused instead of scanning again. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public boolean getReuseResults() {
+        return reuseResults;
+    }
+
+    @DataBoundSetter
+    public void setReuseResults(boolean reuseResults) {
+        this.reuseResults = reuseResults;
+    }
+
+    /**
+     * Retrieves the scope that scales the scan of pull requests and branches to their SCM changes,
+     * or null if the complete scan is always performed. This is a per-build config item.
+     * This method must match the value in <tt>config.jelly</tt>.
+     */
+    public ChangeScope getChangeScope() {
+        return changeScope;
+    }
+
+    @DataBoundSetter
+    public void setChangeScope(ChangeScope changeScope) {
+        this.changeScope = changeScope;
+    }
+
     /**
      * This method is called whenever the build step is executed.
      *
@@ -293,57 +426,545 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
                         @Nonnull final Launcher launcher,
                         @Nonnull final TaskListener listener) throws InterruptedException, IOException {
 
-        ConsoleLogger logger = new ConsoleLogger(listener);
+        build.setResult(scan(build, filePath, launcher, listener, new ConsoleLogger(listener)));
+    }
+
+    /**
+     * Prepares and executes cloudscan. The result is returned rather than applied to the build,
+     * so that several scans can be performed by a single build step.
+     *
+     * @param build    A Run object
+     * @param filePath A FilePath object
+     * @param launcher A Launcher object
+     * @param listener A BuildListener object
+     * @param logger   The logger cloudscan's output is written to
+     * @return SUCCESS if cloudscan completed successfully, otherwise FAILURE
+     */
+    Result scan(@Nonnull final Run<?, ?> build,
+                @Nonnull final FilePath filePath,
+                @Nonnull final Launcher launcher,
+                @Nonnull final TaskListener listener,
+                @Nonnull final ConsoleLogger logger) throws InterruptedException, IOException {
 
         if (useSsc && StringUtils.isBlank(getDescriptor().sscUrl)) {
             logger.log(Messages.unspecifiedUrl_ssc());
-            build.setResult(Result.FAILURE);
-            return;
+            return Result.FAILURE;
         }
         if (!useSsc && StringUtils.isBlank(getDescriptor().controllerUrl)) {
             logger.log(Messages.unspecifiedUrl_controller());
-            build.setResult(Result.FAILURE);
-            return;
+            return Result.FAILURE;
         }
 
+        final long started = System.currentTimeMillis();
+        final ScanTimeline timeline = logger.getTimeline();
+        timeline.enter(ScanPhase.PREPARE, started);
+        ScanTimelineAction.of(build).add(timeline);
+
+        // A single snapshot of the environment is used to expand every field
+        final EnvVars env = build.getEnvironment(listener);
+        final VariableExpander expander = new VariableExpander(env);
+        final PluginMetrics metrics = PluginMetrics.get();
+        final String[] labels = {
+                "controller", getControllerLabel(),
+                "pool", StringUtils.defaultIfBlank(expander.expand(sensorPool), "default")
+        };
+        final ChangeScope.Decision decision = (changeScope != null)
+                ? changeScope.decide(build, env, expander.expand(buildId), logger) : ChangeScope.Decision.FULL;
+        if (decision == ChangeScope.Decision.SKIP) {
+            metrics.increment(PluginMetrics.SCANS_SKIPPED, labels);
+            // The results of the previous scan of the build ID are still subject to the gate
+            return finishReused(expander, logger);
+        }
+        final boolean reduced = decision == ChangeScope.Decision.REDUCED;
+        final String scanFilter = expander.expand(reduced && changeScope.getFilter() != null ? changeScope.getFilter() : filter);
         final Options options = new Options();
-        options.setEnvVars(build.getEnvironment(listener));
-        options.setCommand(generateCommand(build, listener));
-        options.setArgs(generateArgs(build, listener));
-        options.setRules(preProcessRules(build, listener));
-        options.setScanOpts(generateScanOptions(build, listener));
+        options.setPath(env.get("PATH"));
+        options.setCommand(generateCommand(expander));
+        final FilePath fpr = retrieveFpr ? filePath.child(getFileName(expander, ".fpr")) : null;
+        options.setArgs(generateArgs(expander, fpr, scanFilter));
+        options.setRules(preProcessRules(expander));
+        options.setScanOpts(generateScanOptions(expander, reduced && changeScope.getQuick()));
         options.setWorkspace(filePath.getRemote());
+        options.setLabel(logger.getLabel());
+        if (skipUnchanged) {
+            options.setFingerprintIndex(WorkspaceList.tempDir(filePath).child(getFileName(expander, ".fingerprint")).getRemote());
+            options.setFingerprintExcludes(generateFingerprintExcludes(expander, fpr));
+        }
 
-        EnvVars env = build.getEnvironment(listener);
-        String command = launcher.decorateByEnv(env).getChannel().call(new MasterToSlaveCallable<String, IOException>() {
-            public String call() throws IOException {
-                final FortifyCloudScanExecutor executor = new FortifyCloudScanExecutor(listener, options);
-                return executor.prepare();
+        final String scanBuildId = expander.expand(buildId);
+        final String scanVersionId = useSsc ? expander.expand(versionId) : null;
+        final String resultKey = reuseResults ? getResultKey(env, options, scanBuildId, scanFilter, scanVersionId, logger) : null;
+        if (resultKey != null) {
+            final ScanResultIndex.Entry indexed = ScanResultIndex.get().lookup(resultKey, getDescriptor().getResultIndexTtlMillis());
+            if (indexed != null) {
+                metrics.increment(PluginMetrics.SCANS_SKIPPED, labels);
+                return reuse(build, indexed, expander, logger);
             }
-        });
-        String versionCommand = launcher.decorateByEnv(env).getChannel().call(new MasterToSlaveCallable<String, IOException>() {
-            public String call() throws IOException {
-                return CommandUtil.generateShellCommand(new String[] {options.getCommand(), "-version"});
+        }
+
+        // The command, rulepacks and version of cloudscan are all determined on the node in one round trip
+        final PreparedScan prepared = launcher.getChannel().call(new FortifyCloudScanExecutor.Prepare(listener, options));
+        recordVersion(build, filePath, prepared, logger);
+        metrics.record(prepared.getRulepackStats());
+        final SourceFingerprint fingerprint = skipUnchanged ? checkFingerprint(prepared, logger) : null;
+        if (fingerprint != null) {
+            final SourceFingerprintAction.Match previous = SourceFingerprintAction.findPrevious(build, scanBuildId, scanVersionId);
+            if (previous != null && fingerprint.getDigest().equals(previous.getAction().getDigest())) {
+                metrics.increment(PluginMetrics.SCANS_SKIPPED, labels);
+                return reuse(build, previous, expander, logger);
+            }
+        }
+        metrics.increment(PluginMetrics.SCANS_SUBMITTED, labels);
+        if (fpr != null && fpr.exists()) {
+            // Never summarize the FPR of a previous build
+            fpr.delete();
+        }
+        final Long artifactBaseline = (qualityGate != null && useSsc) ? getArtifactBaseline(expander, scanVersionId, logger) : null;
+        // Only the upload and submission are throttled, the permit is released once the controller accepted the job
+        final SubmissionThrottle.Permit permit = SubmissionThrottle.get().acquire(labels[1], labels[3], build.getQueueId(), logger);
+        metrics.record(PluginMetrics.SUBMISSION_WAIT, permit.getWaited(), labels);
+        logger.onSubmitted(new Runnable() {
+            public void run() {
+                permit.release();
             }
         });
-        launcher.launch().cmdAsSingleString(versionCommand).envs(env).stdout(logger).start().join();
-        if (launcher.launch().cmdAsSingleString(command).envs(env).stdout(logger).start().join() == 0) {
-            build.setResult(Result.SUCCESS);
+        timeline.enter(ScanPhase.UPLOAD);
+        final int exitCode;
+        try {
+            exitCode = launch(build, launcher, listener, logger, prepared.getCommand(), env);
+        } finally {
+            permit.release();
+        }
+        Result result;
+        if (exitCode == 0) {
+            result = Result.SUCCESS;
+            metrics.increment(PluginMetrics.SCANS_SUCCEEDED, labels);
+            if (fingerprint != null) {
+                synchronized (build) {
+                    build.addAction(new SourceFingerprintAction(scanBuildId, scanVersionId, fingerprint.getDigest(),
+                            logger.getJobToken(), started, null));
+                }
+            }
+            final FprSummary summary = (fpr != null) ? summarizeFpr(build, fpr, logger) : null;
+            if (resultKey != null) {
+                recordResult(build, env, resultKey, scanVersionId, fpr, summary, started, logger);
+            }
+            if (qualityGate != null) {
+                result = result.combine((!useSsc || artifactBaseline != null)
+                        ? evaluateQualityGate(expander, (artifactBaseline != null) ? artifactBaseline : -1, logger)
+                        : Result.FAILURE);
+            }
+        } else {
+            result = Result.FAILURE;
+            metrics.increment(PluginMetrics.SCANS_FAILED, labels);
+            timeline.enter(ScanPhase.FINISHED);
+        }
+        metrics.record(PluginMetrics.SCAN_DURATION, System.currentTimeMillis() - started, "result", result.toString());
+        recordJob(build, logger);
+        return result;
+    }
+
+    /**
+     * Returns the URL of the controller or SSC the scan is submitted to, which labels its metrics and submissions.
+     */
+    String getControllerLabel() {
+        return useSsc ? getDescriptor().getSscUrl() : getDescriptor().getControllerUrl();
+    }
+
+    /**
+     * Returns the name of a file specific to the build id, such as the FPR it is retrieved to.
+     */
+    private String getFileName(VariableExpander expander, String extension) {
+        final String id = expander.expand(buildId);
+        return "cloudscan" + (StringUtils.isNotBlank(id) ? "-" + id.trim().replaceAll("[^\\w.-]", "_") : "") + extension;
+    }
+
+    /**
+     * Returns the patterns of the files that are not part of the fingerprint of the workspace.
+     * The retrieved FPR is always excluded, as it changes with every scan.
+     */
+    private List<String> generateFingerprintExcludes(VariableExpander expander, FilePath fpr) {
+        final List<String> excludes = splitPatterns(expander, fingerprintExcludes);
+        if (fpr != null) {
+            excludes.add(fpr.getName());
+        }
+        return excludes;
+    }
+
+    /**
+     * Splits a comma or line separated list of patterns and expands the variables they contain.
+     */
+    private static List<String> splitPatterns(VariableExpander expander, String patterns) {
+        final List<String> list = new ArrayList<String>();
+        if (StringUtils.isNotBlank(patterns)) {
+            for (String pattern : patterns.split("\t|\n|\r|,")) {
+                if (StringUtils.isNotBlank(pattern)) {
+                    list.add(expander.expand(pattern.trim()));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Logs the fingerprint of the workspace computed while preparing the scan.
+     * @return the fingerprint, or null if the workspace could not be fingerprinted
+     */
+    private SourceFingerprint checkFingerprint(PreparedScan prepared, ConsoleLogger logger) {
+        final SourceFingerprint fingerprint = prepared.getFingerprint();
+        if (fingerprint == null) {
+            logger.log("WARNING: Unable to fingerprint the workspace, the scan is not skipped: " + prepared.getFingerprintError());
+            return null;
+        }
+        logger.log(Messages.fingerprint_computed(fingerprint.getFiles(), fingerprint.getHashedFiles(),
+                fingerprint.getHashedBytes(), fingerprint.getDuration()));
+        return fingerprint;
+    }
+
+    /**
+     * Refers the build to the results of a previous scan with identical inputs instead of scanning again.
+     * The CloudScan job and the FPR summary of the previous scan are linked to the build, so that
+     * <tt>waitForCloudScan</tt> and the build page behave as if the scan had been performed.
+     */
+    private Result reuse(Run<?, ?> build, SourceFingerprintAction.Match previous, VariableExpander expander,
+                         ConsoleLogger logger) throws InterruptedException {
+        final SourceFingerprintAction scan = previous.getAction();
+        final String origin = (scan.getReusedFrom() != null) ? scan.getReusedFrom() : previous.getBuild().getExternalizableId();
+        logger.log(Messages.fingerprint_unchanged(previous.getBuild().getFullDisplayName(), origin));
+        synchronized (build) {
+            build.addAction(new SourceFingerprintAction(scan.getBuildId(), scan.getVersionId(), scan.getDigest(),
+                    scan.getJobToken(), scan.getStarted(), origin));
+            for (CloudScanJobAction job : previous.getBuild().getActions(CloudScanJobAction.class)) {
+                if (job.getToken().equals(scan.getJobToken())) {
+                    linkJob(build, job.getToken(), job.getControllerUrl(), job.isUpload(), job.getState());
+                    break;
+                }
+            }
+            for (FprSummaryAction summary : previous.getBuild().getActions(FprSummaryAction.class)) {
+                if (StringUtils.equals(summary.getLabel(), logger.getLabel())) {
+                    build.addAction(new FprSummaryAction(summary.getFprName(), summary.getLabel(), summary.getSummary()));
+                    break;
+                }
+            }
+        }
+        return finishReused(expander, logger);
+    }
+
+    /**
+     * Refers the build to the results of a scan of the same revision with the same settings, performed
+     * by any job, instead of scanning again.
+     */
+    private Result reuse(Run<?, ?> build, ScanResultIndex.Entry indexed, VariableExpander expander, ConsoleLogger logger)
+            throws InterruptedException {
+        logger.log(Messages.resultIndex_reused(indexed.getRevision(), indexed.getBuild()));
+        synchronized (build) {
+            if (indexed.getJobToken() != null) {
+                linkJob(build, indexed.getJobToken(), indexed.getControllerUrl(), indexed.isUpload(), null);
+            }
+            if (indexed.getSummary() != null) {
+                build.addAction(new FprSummaryAction(indexed.getFprName(), logger.getLabel(), indexed.getSummary()));
+            }
+        }
+        return finishReused(expander, logger);
+    }
+
+    /**
+     * Links a CloudScan job submitted by another build to the build, so that it can be waited for.
+     */
+    private static void linkJob(Run<?, ?> build, String token, String controllerUrl, boolean upload, String state) {
+        final CloudScanJobAction job = new CloudScanJobAction(token, controllerUrl, upload);
+        job.setState(state);
+        build.addAction(job);
+    }
+
+    /**
+     * Completes a build step that reused the results of another scan or skipped the scan.
+     */
+    private Result finishReused(VariableExpander expander, ConsoleLogger logger) throws InterruptedException {
+        logger.getTimeline().enter(ScanPhase.FINISHED);
+        if (qualityGate != null) {
+            // The results were uploaded by an earlier scan, so the latest artifact of the build ID is evaluated
+            return evaluateQualityGate(expander, -1, logger);
+        }
+        return Result.SUCCESS;
+    }
+
+    /**
+     * Returns the revision checked out by the build, as set by the Git, Subversion or Mercurial plugin,
+     * or null if it is not known.
+     */
+    private static String getRevision(EnvVars env) {
+        for (String variable : REVISION_VARIABLES) {
+            if (StringUtils.isNotBlank(env.get(variable))) {
+                return env.get(variable).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the result of a scan in the {@link ScanResultIndex}. Only a scan whose FPR was retrieved is known to
+     * have completed; the result of a job that was only submitted is pending until <tt>waitForCloudScan</tt> sees
+     * the job complete.
+     */
+    private void recordResult(Run<?, ?> build, EnvVars env, String resultKey, String scanVersionId, FilePath fpr,
+                              FprSummary summary, long started, ConsoleLogger logger) throws IOException, InterruptedException {
+        final boolean retrieved = fpr != null && fpr.exists();
+        if (!retrieved && logger.getJobToken() == null) {
+            return;
+        }
+        final ScanResultIndex.Entry entry = new ScanResultIndex.Entry(resultKey, getRevision(env), build.getExternalizableId(),
+                logger.getJobToken(), StringUtils.trimToNull(getDescriptor().getControllerUrl()), useSsc, scanVersionId,
+                (summary != null) ? fpr.getName() : null, summary, started);
+        if (retrieved) {
+            ScanResultIndex.get().record(entry, getDescriptor().getResultIndexTtlMillis(), getDescriptor().getResultIndexMaxEntries());
         } else {
-            build.setResult(Result.FAILURE);
+            ScanResultIndex.get().recordPending(entry, getDescriptor().getResultIndexMaxEntries());
+        }
+    }
+
+    /**
+     * Returns the key of the scan in the {@link ScanResultIndex}: the revision, the rulepacks as configured
+     * and the settings that determine the results, including the build ID and where they are uploaded to.
+     * Settings that only affect how the scan is run, such as the sensor pool and the heap sizes, are not part
+     * of the key.
+     * @param scanBuildId the expanded build ID of the translated sources
+     * @param scanFilter the expanded filter of the scan
+     * @param scanVersionId the expanded project version ID the results are uploaded to, or null if not uploaded to SSC
+     * @return the key, or null if the revision checked out by the build is not known
+     */
+    private String getResultKey(EnvVars env, Options options, String scanBuildId, String scanFilter,
+                                String scanVersionId, ConsoleLogger logger) {
+        final String revision = getRevision(env);
+        if (revision == null) {
+            logger.log("WARNING: " + Messages.resultIndex_noRevision());
+            return null;
+        }
+        final List<String> settings = new ArrayList<String>();
+        for (String option : options.getScanOpts()) {
+            if (!isHeapOption(option)) {
+                settings.add(option);
+            }
+        }
+        settings.add("-b=" + StringUtils.trimToEmpty(scanBuildId));
+        settings.add("-filter=" + StringUtils.trimToEmpty(scanFilter));
+        if (useSsc) {
+            settings.add("-sscurl=" + getDescriptor().getSscUrl());
+            settings.add("-versionid=" + StringUtils.trimToEmpty(scanVersionId));
+        } else {
+            settings.add("-url=" + getDescriptor().getControllerUrl());
+        }
+        return ScanResultIndex.key(revision, options.getRules(), settings);
+    }
+
+    /**
+     * Returns if the scan option only sizes the heap of the scan, which does not change its results.
+     */
+    private static boolean isHeapOption(String option) {
+        return "-autoheap".equals(option) || option.startsWith("-Xmx")
+                || option.startsWith("-Dcom.fortify.sca.RmiWorkerMaxHeap=");
+    }
+
+    /**
+     * Summarizes the issues of the retrieved FPR on the node it was retrieved to and adds the summary to the build.
+     * Failing to summarize the FPR does not fail the build.
+     * @return the summary, or null if the FPR could not be summarized
+     */
+    private FprSummary summarizeFpr(Run<?, ?> build, FilePath fpr, ConsoleLogger logger) throws InterruptedException {
+        try {
+            if (!fpr.exists()) {
+                logger.log("WARNING: " + Messages.fpr_missing(fpr.getRemote()));
+                return null;
+            }
+            final FprSummary summary = fpr.act(new FprSummarizer());
+            logger.log(Messages.fpr_summary(summary.getTotal(), summary.getCritical(), summary.getHigh(),
+                    summary.getMedium(), summary.getLow()));
+            synchronized (build) {
+                build.addAction(new FprSummaryAction(fpr.getName(), logger.getLabel(), summary));
+            }
+            return summary;
+        } catch (IOException e) {
+            logger.log("WARNING: Unable to summarize the issues in " + fpr.getRemote() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the quality gate against the issues of the project version the scan was uploaded to.
+     * The issues are queried with the global SSC token, or with the Cloud Controller token of the build
+     * step if none is configured.
+     * @param afterArtifactId the id of the latest artifact of the project version before the scan was submitted,
+     *                        or -1 to evaluate the latest artifact of the build ID
+     */
+    private Result evaluateQualityGate(VariableExpander expander, long afterArtifactId, ConsoleLogger logger)
+            throws InterruptedException {
+        if (!useSsc) {
+            logger.log("WARNING: " + Messages.qualityGate_requiresSsc());
+            return Result.SUCCESS;
+        }
+        final long id;
+        try {
+            id = Long.parseLong(StringUtils.trimToEmpty(expander.expand(versionId)));
+        } catch (NumberFormatException e) {
+            logger.log("ERROR: " + Messages.qualityGate_invalidVersionId());
+            return Result.FAILURE;
+        }
+        final String url = expander.expand(getDescriptor().getSscUrl());
+        final String token = getQualityGateToken(expander);
+        final FortifySsc ssc;
+        try {
+            ssc = new FortifySsc(new URL(url + "/fm-ws/services"), token);
+        } catch (MalformedURLException e) {
+            logger.log("ERROR: " + Messages.qualityGate_failed(e.getMessage()));
+            return Result.FAILURE;
+        }
+        return qualityGate.evaluate(ssc, new SscArtifacts(url, token), id, expander.expand(buildId), afterArtifactId, logger);
+    }
+
+    /**
+     * Returns the id of the latest artifact of the project version before the scan is submitted, so that the
+     * quality gate evaluates the artifact of this scan rather than that of an earlier scan of the same build ID.
+     * @return the id of the artifact, 0 if there is none, or null if it cannot be determined
+     */
+    private Long getArtifactBaseline(VariableExpander expander, String scanVersionId, ConsoleLogger logger) {
+        try {
+            return new SscArtifacts(expander.expand(getDescriptor().getSscUrl()), getQualityGateToken(expander))
+                    .getLatestArtifactId(Long.parseLong(StringUtils.trimToEmpty(scanVersionId)));
+        } catch (NumberFormatException e) {
+            logger.log("ERROR: " + Messages.qualityGate_invalidVersionId());
+        } catch (IOException e) {
+            logger.log("ERROR: " + Messages.qualityGate_failed(e.getMessage()));
+        }
+        return null;
+    }
+
+    private String getQualityGateToken(VariableExpander expander) {
+        return StringUtils.defaultIfBlank(getDescriptor().getGlobalSscToken(), expander.expand(sscToken));
+    }
+
+    /**
+     * Launches cloudscan and waits for it to exit. When the log is condensed, the complete output
+     * is optionally archived with the build as <tt>cloudscan-output.log.gz</tt>.
+     * @return the exit code of cloudscan
+     */
+    private int launch(Run<?, ?> build, Launcher launcher, TaskListener listener, ConsoleLogger logger,
+                       String command, EnvVars env) throws InterruptedException, IOException {
+        if (!condensedLog) {
+            return launcher.launch().cmdAsSingleString(command).envs(env).stdout(logger).start().join();
+        }
+        File rawLogDir = null;
+        String rawLogName = null;
+        if (archiveRawLog) {
+            rawLogDir = Files.createTempDirectory("cloudscan-log").toFile();
+            rawLogName = "cloudscan-output"
+                    + (logger.getLabel() != null ? "-" + logger.getLabel().replaceAll("[^\\w.-]", "_") : "") + ".log.gz";
+            logger.keepRawLog(new File(rawLogDir, rawLogName));
+        }
+        logger.condense();
+        try {
+            return launcher.launch().cmdAsSingleString(command).envs(env).stdout(logger).start().join();
+        } finally {
+            logger.finish();
+            if (rawLogDir != null) {
+                archiveRawLog(build, listener, logger, rawLogDir, rawLogName);
+            }
         }
     }
 
+    /**
+     * Archives the raw log through the artifact manager of the build and removes the local copy.
+     */
+    private void archiveRawLog(Run<?, ?> build, TaskListener listener, ConsoleLogger logger, File dir, String name)
+            throws InterruptedException {
+        try {
+            final BuildListener buildListener = (listener instanceof BuildListener) ? (BuildListener) listener
+                    : new StreamBuildListener(listener.getLogger(), Charset.defaultCharset());
+            build.pickArtifactManager().archive(new FilePath(dir), new Launcher.LocalLauncher(listener),
+                    buildListener, Collections.singletonMap(name, name));
+            logger.log(Messages.condensed_archived(name));
+        } catch (IOException e) {
+            logger.log("WARNING: Unable to archive the complete output of cloudscan: " + e.getMessage());
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * Returns a copy of this build step with the module specific settings of the target applied.
+     * Settings that are blank in the target are inherited from this build step.
+     * @param target the scan target
+     * @return a new FortifyCloudScanBuilder
+     */
+    FortifyCloudScanBuilder forTarget(ScanTarget target) {
+        final FortifyCloudScanBuilder builder = new FortifyCloudScanBuilder(
+                StringUtils.defaultIfBlank(target.getBuildId(), buildId), !useAutoHeap, xmx, rmiWorkerMaxHeap,
+                StringUtils.defaultIfBlank(target.getBuildLabel(), buildLabel),
+                StringUtils.defaultIfBlank(target.getBuildProject(), buildProject),
+                StringUtils.defaultIfBlank(target.getBuildVersion(), buildVersion), useSsc, sscToken,
+                StringUtils.defaultIfBlank(target.getUpToken(), upToken),
+                StringUtils.defaultIfBlank(target.getVersionId(), versionId), scanArgs, filter,
+                noDefaultRules, disableSourceRendering, disableSnippets, quick, rules, useParallelAnalysis,
+                StringUtils.defaultIfBlank(target.getSensorPool(), sensorPool));
+        builder.setCondensedLog(condensedLog);
+        builder.setArchiveRawLog(archiveRawLog);
+        builder.setRetrieveFpr(retrieveFpr);
+        builder.setQualityGate(qualityGate);
+        builder.setSkipUnchanged(skipUnchanged);
+        builder.setFingerprintExcludes(fingerprintExcludes);
+        builder.setReuseResults(reuseResults);
+        builder.setChangeScope(changeScope);
+        return builder;
+    }
+
+    /**
+     * Logs the version of cloudscan installed on the node and records it on the build. The version is
+     * cached on the node and cloudscan is only launched to determine it when the executable has changed.
+     * Failing to determine the version is not fatal, the scan itself will report a missing executable.
+     */
+    private void recordVersion(Run<?, ?> build, FilePath filePath, PreparedScan prepared, ConsoleLogger logger) {
+        final String version = prepared.getCliVersion();
+        if (version == null) {
+            logger.log("WARNING: Unable to determine the version of cloudscan: " + prepared.getCliVersionError());
+            return;
+        }
+        logger.log(version);
+        final Computer computer = filePath.toComputer();
+        final String node = (computer != null) ? computer.getDisplayName() : "";
+        synchronized (build) {
+            for (CloudScanVersionAction action : build.getActions(CloudScanVersionAction.class)) {
+                if (version.equals(action.getVersion()) && node.equals(action.getNode())) {
+                    return;
+                }
+            }
+            build.addAction(new CloudScanVersionAction(version, node));
+        }
+    }
+
+    /**
+     * Records the job cloudscan submitted to the controller (if any) so that its completion
+     * can be tracked with the <tt>waitForCloudScan</tt> Pipeline step.
+     * @param build A Run object
+     * @param logger the logger cloudscan's output was written to
+     */
+    private void recordJob(Run<?, ?> build, ConsoleLogger logger) {
+        final String token = logger.getJobToken();
+        if (token == null) {
+            return;
+        }
+        final String controllerUrl = StringUtils.trimToNull(getDescriptor().getControllerUrl());
+        build.addAction(new CloudScanJobAction(token, controllerUrl, useSsc));
+        logger.log(Messages.submitted(token));
+    }
+
 
     /**
      * Generate the cloudscan exeutable command
-     * @param build an AbstractBuild object
-     * @param listener A BuildListener object
+     * @param expander the VariableExpander of the build
      * @return fortifycloudscan Arguments
      */
-    private String generateCommand(Run<?, ?> build, TaskListener listener) {
+    private String generateCommand(VariableExpander expander) {
         // Check if the path to the cloudscan executable was specified
-        String exePath = substituteVariable(build, listener, this.getDescriptor().getExePath());
+        String exePath = expander.expand(this.getDescriptor().getExePath());
         if (StringUtils.isNotBlank(exePath)) {
             return exePath;
         } else {
@@ -355,28 +976,34 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
     /**
      * Generate Options from build configuration preferences that will be passed to
      * the build step in fortifycloudscan
-     * @param build an AbstractBuild object
-     * @param listener A BuildListener object
+     * @param expander the VariableExpander of the build
+     * @param fpr the file to retrieve the FPR to once the scan has completed, or null to not wait for the scan
+     * @param scanFilter the expanded filter of the scan, which is reduced to the change for some builds
      * @return fortifycloudscan Arguments
      */
-    private List<String> generateArgs(Run<?, ?> build, TaskListener listener) {
+    private List<String> generateArgs(VariableExpander expander, FilePath fpr, String scanFilter) {
         List<String> args = new ArrayList<String>();
 
         if (useSsc) {
-            CommandUtil.append(args, substituteVariable(build, listener, this.getDescriptor().getSscUrl()), "-sscurl");
-            CommandUtil.append(args, substituteVariable(build, listener, sscToken), "-ssctoken");
+            CommandUtil.append(args, expander.expand(this.getDescriptor().getSscUrl()), "-sscurl");
+            CommandUtil.append(args, expander.expand(sscToken), "-ssctoken");
             CommandUtil.append(args, null, "start");
             CommandUtil.append(args, null, "-upload");
-            CommandUtil.append(args, substituteVariable(build, listener, versionId), "-versionid");
-            CommandUtil.append(args, substituteVariable(build, listener, upToken), "-uptoken");
+            CommandUtil.append(args, expander.expand(versionId), "-versionid");
+            CommandUtil.append(args, expander.expand(upToken), "-uptoken");
         } else {
-            CommandUtil.append(args, substituteVariable(build, listener, this.getDescriptor().getControllerUrl()), "-url");
+            CommandUtil.append(args, expander.expand(this.getDescriptor().getControllerUrl()), "-url");
             CommandUtil.append(args, null, "start");
         }
         /* Populate CloudScan START command */
-        CommandUtil.append(args, substituteVariable(build, listener, buildId), "-b");
-        CommandUtil.append(args, substituteVariable(build, listener, filter), "-filter");
-        CommandUtil.append(args, substituteVariable(build, listener, sensorPool), "-pool");
+        CommandUtil.append(args, expander.expand(buildId), "-b");
+        CommandUtil.append(args, scanFilter, "-filter");
+        CommandUtil.append(args, expander.expand(sensorPool), "-pool");
+        if (fpr != null) {
+            CommandUtil.append(args, null, "-block");
+            CommandUtil.append(args, null, "-o");
+            CommandUtil.append(args, fpr.getRemote(), "-f");
+        }
 
         return args;
     }
@@ -384,14 +1011,13 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
     /**
      * Pre processes the rules field by separating multiple rules and performing
      * environment variable substitution if necessary.
-     * @param build an AbstractBuild object
-     * @param listener A BuildListener object
+     * @param expander the VariableExpander of the build
      * @return a string array of zero or more rule paths
      */
-    private List<String> preProcessRules(Run<?, ?> build, TaskListener listener) {
+    private List<String> preProcessRules(VariableExpander expander) {
         String[] paths = rules.split("\t|\n|\r|,");
         for (int i=0; i<paths.length; i++) {
-            paths[i] = substituteVariable(build, listener, paths[i]);
+            paths[i] = expander.expand(paths[i]);
         }
         return Arrays.asList(paths);
     }
@@ -399,11 +1025,11 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
     /**
      * Generate Scan Options from build configuration preferences that will be passed to
      * the build step in fortifycloudscan
-     * @param build an AbstractBuild object
-     * @param listener A BuildListener object
+     * @param expander the VariableExpander of the build
+     * @param reducedQuick true if the scan is reduced to the change as a quick scan, regardless of the quick setting
      * @return fortifycloudscan Options
      */
-    private List<String> generateScanOptions(Run<?, ?> build, TaskListener listener) {
+    private List<String> generateScanOptions(VariableExpander expander, boolean reducedQuick) {
         List<String> scanOptions = new ArrayList<String>();
 
         CommandUtil.append(scanOptions, null, "-scan");
@@ -412,18 +1038,18 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
         if (useAutoHeap) {
             CommandUtil.append(scanOptions, useAutoHeap, "-autoheap");
         } else {
-            CommandUtil.append(scanOptions, substituteVariable(build, listener, xmx), "-Xmx", true);
-            CommandUtil.append(scanOptions, substituteVariable(build, listener, rmiWorkerMaxHeap), "-Dcom.fortify.sca.RmiWorkerMaxHeap=", true);
+            CommandUtil.append(scanOptions, expander.expand(xmx), "-Xmx", true);
+            CommandUtil.append(scanOptions, expander.expand(rmiWorkerMaxHeap), "-Dcom.fortify.sca.RmiWorkerMaxHeap=", true);
         }
         CommandUtil.append(scanOptions, noDefaultRules, "-no-default-rules");
-        CommandUtil.append(scanOptions, substituteVariable(build, listener, buildLabel), "-build-label");
-        CommandUtil.append(scanOptions, substituteVariable(build, listener, buildProject), "-build-project");
-        CommandUtil.append(scanOptions, substituteVariable(build, listener, buildVersion), "-build-version");
+        CommandUtil.append(scanOptions, expander.expand(buildLabel), "-build-label");
+        CommandUtil.append(scanOptions, expander.expand(buildProject), "-build-project");
+        CommandUtil.append(scanOptions, expander.expand(buildVersion), "-build-version");
         CommandUtil.append(scanOptions, disableSourceRendering, "-disable-source-rendering");
         CommandUtil.append(scanOptions, disableSnippets, "-Dcom.fortify.sca.FVDLDisableSnippets=true");
-        CommandUtil.append(scanOptions, quick, "-quick");
+        CommandUtil.append(scanOptions, quick || reducedQuick, "-quick");
         CommandUtil.append(scanOptions, useParallelAnalysis, "-mt");
-        CommandUtil.append(scanOptions, null, substituteVariable(build, listener, scanArgs));
+        CommandUtil.append(scanOptions, null, expander.expand(scanArgs));
 
         return scanOptions;
     }
@@ -467,16 +1093,64 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
          */
         private String globalSscToken;
 
+        /**
+         * Specifies the maximum size (in MB) of the rulepack cache on each node
+         */
+        private String rulepackCacheSize;
+
+        /**
+         * Specifies how long (in minutes) projects and versions retrieved from SSC are cached
+         */
+        private String sscCacheTtl;
+
+        /**
+         * Specifies how long (in hours) the results of a scan are reused by other builds
+         */
+        private String resultIndexTtl;
+
+        /**
+         * Specifies the maximum number of scan results kept in the result index
+         */
+        private String resultIndexSize;
+
+        /**
+         * Specifies the maximum number of scans submitted to the same controller and sensor pool concurrently
+         */
+        private String maxSubmissions;
+
+        /**
+         * The rulepack cache size used when none has been configured
+         */
+        private static final long DEFAULT_RULEPACK_CACHE_SIZE = 1024;
+
+        /**
+         * The SSC cache TTL used when none has been configured
+         */
+        private static final long DEFAULT_SSC_CACHE_TTL = 15;
+
+        /**
+         * The result index TTL (in hours) and size used when none have been configured
+         */
+        private static final long DEFAULT_RESULT_INDEX_TTL = 24;
+        private static final int DEFAULT_RESULT_INDEX_SIZE = 1000;
+
+        /**
+         * Caches the projects and versions retrieved from SSC
+         */
+        private transient SscCache sscCache;
+
         /**
          * Precompiled RegEx validation patterns
          */
         private static final Pattern PATTERN_VERSION_ID = Pattern.compile("^[0-9]+$"); // Older versions of SSC has 5 digit project ID's, newer SSC versions start at 1
         private static final Pattern PATTERN_UUID = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
         private static final Pattern PATTERN_MEMORY = Pattern.compile("^[0-9]*(g|G|m|M)$");
+        private static final Pattern PATTERN_NUMBER = Pattern.compile("^[0-9]+$");
 
         public DescriptorImpl() {
             super(FortifyCloudScanBuilder.class);
             load();
+            SubmissionThrottle.get().setLimit(getMaxSubmissionsLimit());
         }
 
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
@@ -546,6 +1220,46 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
             }
         }
 
+        public FormValidation doCheckRulepackCacheSize(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PATTERN_NUMBER.matcher(value).matches()) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error("Rulepack cache size must be a number of megabytes.");
+            }
+        }
+
+        public FormValidation doCheckSscCacheTtl(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PATTERN_NUMBER.matcher(value).matches()) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error("SSC cache duration must be a number of minutes.");
+            }
+        }
+
+        public FormValidation doCheckResultIndexTtl(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PATTERN_NUMBER.matcher(value).matches()) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error("The result reuse duration must be a number of hours.");
+            }
+        }
+
+        public FormValidation doCheckResultIndexSize(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PATTERN_NUMBER.matcher(value).matches()) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error("The maximum number of scan results must be a number.");
+            }
+        }
+
+        public FormValidation doCheckMaxSubmissions(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PATTERN_NUMBER.matcher(value).matches()) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error("The maximum number of concurrent submissions must be a number.");
+            }
+        }
+
         public FormValidation doCheckUpToken(@QueryParameter String value) {
             return checkToken(value);
         }
@@ -580,8 +1294,7 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
             }
             ListBoxModel m = new ListBoxModel();
             try {
-                FortifySsc ssc = new FortifySsc(new URL(this.sscUrl + "/fm-ws/services"), this.globalSscToken);
-                List<Project> projects = ssc.getProjects();
+                List<Project> projects = getSscCache().getProjects();
                 m.add("---- " + Messages.select() + " ---- ", "");
                 for (Project project : projects) {
                     m.add(project.getName(), String.valueOf(project.getId()));
@@ -607,8 +1320,7 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
                 return m;
             }
             try {
-                FortifySsc ssc = new FortifySsc(new URL(this.sscUrl + "/fm-ws/services"), this.globalSscToken);
-                List<ProjectVersionLite> projectVersions = ssc.getActiveProjectVersions(Long.parseLong(project));
+                List<ProjectVersionLite> projectVersions = getSscCache().getActiveProjectVersions(Long.parseLong(project));
                 m.add("---- " + Messages.select() + " ---- ", "");
                 for (ProjectVersionLite projectVersion : projectVersions) {
                     m.add(projectVersion.getName(), String.valueOf(projectVersion.getId()));
@@ -619,6 +1331,40 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
             return m;
         }
 
+        /**
+         * Discards the cached projects and versions and immediately reloads the projects from SSC.
+         * @param item the job being configured, or null when invoked from the global configuration
+         * @return a FormValidation object
+         */
+        @RequirePOST
+        public FormValidation doRefreshSscCache(@AncestorInPath Item item) {
+            if (item != null) {
+                item.checkPermission(Item.CONFIGURE);
+            } else {
+                Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+            }
+            if (StringUtils.isBlank(this.sscUrl) || StringUtils.isBlank(this.globalSscToken)) {
+                return FormValidation.error(Messages.sscNotSetup());
+            }
+            try {
+                return FormValidation.ok(Messages.sscRefreshed(getSscCache().refresh()));
+            } catch (Exception e) {
+                return FormValidation.error(Messages.sscfailure() + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Returns the cache of SSC projects and versions for the current global configuration.
+         */
+        private synchronized SscCache getSscCache() throws MalformedURLException {
+            final long ttl = TimeUnit.MINUTES.toMillis(getSscCacheTtlMinutes());
+            if (sscCache == null || !sscCache.isFor(this.sscUrl, this.globalSscToken, ttl)) {
+                final FortifySsc ssc = new FortifySsc(new URL(this.sscUrl + "/fm-ws/services"), this.globalSscToken);
+                sscCache = new SscCache(ssc, this.sscUrl, this.globalSscToken, ttl);
+            }
+            return sscCache;
+        }
+
         /**
          * Takes the /apply/save step in the global config and saves the JSON data.
          * @param req the request
@@ -632,6 +1378,12 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
             sscUrl = formData.getString("sscUrl").replaceAll("/$", ""); // remove trailing slash if present
             controllerUrl = formData.getString("controllerUrl").replaceAll("/$", ""); // remove trailing slash if present
             globalSscToken = formData.getString("globalSscToken");
+            rulepackCacheSize = formData.optString("rulepackCacheSize");
+            sscCacheTtl = formData.optString("sscCacheTtl");
+            resultIndexTtl = formData.optString("resultIndexTtl");
+            resultIndexSize = formData.optString("resultIndexSize");
+            maxSubmissions = formData.optString("maxSubmissions");
+            SubmissionThrottle.get().setLimit(getMaxSubmissionsLimit());
             save();
             return super.configure(req, formData);
         }
@@ -663,38 +1415,100 @@ public class FortifyCloudScanBuilder extends Builder implements SimpleBuildStep,
         public String getGlobalSscToken() {
             return globalSscToken;
         }
-    }
 
-    /**
-     * Replace a Jenkins environment variable in the form ${name} contained in the
-     * specified String with the value of the matching environment variable.
-     */
-    protected String substituteVariable(Run<?, ?> build, TaskListener listener, String parameterizedValue) {
-        // We cannot perform variable substitution for Pipeline jobs, so check to see if Run is an instance
-        // of AbstractBuild or not. If not, simply return the value without attempting variable substitution.
-        if (! (build instanceof AbstractBuild)) {
-            return parameterizedValue;
+        /**
+         * Returns the global configuration for the maximum rulepack cache size in MB.
+         */
+        public String getRulepackCacheSize() {
+            return rulepackCacheSize;
         }
-        try {
-            if (parameterizedValue != null && parameterizedValue.contains("${")) {
-                final int start = parameterizedValue.indexOf("${");
-                final int end = parameterizedValue.indexOf("}", start);
-                final String parameter = parameterizedValue.substring(start + 2, end);
-                final String value = build.getEnvironment(listener).get(parameter);
-                if (value == null) {
-                    throw new IllegalStateException(parameter);
-                }
-                final String substitutedValue = parameterizedValue.substring(0, start) + value + (parameterizedValue.length() > end + 1 ? parameterizedValue.substring(end + 1) : "");
-                if (end > 0) { // recursively substitute variables
-                    return substituteVariable(build, listener, substitutedValue);
-                } else {
-                    return parameterizedValue;
-                }
-            } else {
-                return parameterizedValue;
+
+        /**
+         * Returns the global configuration for how long SSC data is cached in minutes.
+         */
+        public String getSscCacheTtl() {
+            return sscCacheTtl;
+        }
+
+        /**
+         * Returns how long SSC data is cached in minutes, falling back to the default if not configured.
+         */
+        public long getSscCacheTtlMinutes() {
+            if (StringUtils.isNotBlank(sscCacheTtl) && PATTERN_NUMBER.matcher(sscCacheTtl).matches()) {
+                return Long.parseLong(sscCacheTtl);
+            }
+            return DEFAULT_SSC_CACHE_TTL;
+        }
+
+        /**
+         * Returns the global configuration for how long the results of a scan are reused in hours.
+         */
+        public String getResultIndexTtl() {
+            return resultIndexTtl;
+        }
+
+        /**
+         * Returns the global configuration for the maximum number of scan results kept.
+         */
+        public String getResultIndexSize() {
+            return resultIndexSize;
+        }
+
+        /**
+         * Returns how long the results of a scan are reused in milliseconds, falling back to the default if not configured.
+         */
+        public long getResultIndexTtlMillis() {
+            long hours = DEFAULT_RESULT_INDEX_TTL;
+            if (StringUtils.isNotBlank(resultIndexTtl) && PATTERN_NUMBER.matcher(resultIndexTtl).matches()) {
+                hours = Long.parseLong(resultIndexTtl);
+            }
+            return TimeUnit.HOURS.toMillis(hours);
+        }
+
+        /**
+         * Returns the maximum number of scan results kept, falling back to the default if not configured.
+         */
+        public int getResultIndexMaxEntries() {
+            if (StringUtils.isNotBlank(resultIndexSize) && PATTERN_NUMBER.matcher(resultIndexSize).matches()) {
+                return Integer.parseInt(resultIndexSize);
+            }
+            return DEFAULT_RESULT_INDEX_SIZE;
+        }
+
+        /**
+         * Returns the global configuration for the maximum number of concurrent submissions.
+         */
+        public String getMaxSubmissions() {
+            return maxSubmissions;
+        }
+
+        /**
+         * Returns the maximum number of scans submitted to the same controller and sensor pool concurrently,
+         * or zero if submissions are not limited.
+         */
+        public int getMaxSubmissionsLimit() {
+            if (StringUtils.isNotBlank(maxSubmissions) && PATTERN_NUMBER.matcher(maxSubmissions).matches()) {
+                return Integer.parseInt(maxSubmissions);
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the submission statistics of every controller and sensor pool, shown on the global configuration.
+         */
+        public List<SubmissionThrottle.Stats> getSubmissionStats() {
+            return SubmissionThrottle.get().getStats();
+        }
+
+        /**
+         * Returns the maximum size of the rulepack cache on each node in bytes.
+         */
+        public long getRulepackCacheSizeBytes() {
+            long megabytes = DEFAULT_RULEPACK_CACHE_SIZE;
+            if (StringUtils.isNotBlank(rulepackCacheSize) && PATTERN_NUMBER.matcher(rulepackCacheSize).matches()) {
+                megabytes = Long.parseLong(rulepackCacheSize);
             }
-        } catch (IOException | InterruptedException e) {
-            return parameterizedValue;
+            return megabytes * 1024 * 1024;
         }
     }
 }
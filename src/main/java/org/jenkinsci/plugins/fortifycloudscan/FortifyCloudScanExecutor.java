@@ -16,11 +16,21 @@
 package org.jenkinsci.plugins.fortifycloudscan;
 
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.fortifycloudscan.util.CommandUtil;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class is called by FortifyCloudScanBuilder (the Jenkins build-step plugin).
@@ -32,8 +42,15 @@ public class FortifyCloudScanExecutor implements Serializable {
 
     private static final long serialVersionUID = 3595913479313812273L;
 
+    /**
+     * The maximum number of rulepacks resolved concurrently
+     */
+    private static final int RESOLVER_THREADS = Math.max(1,
+            Integer.getInteger(FortifyCloudScanExecutor.class.getName() + ".resolverThreads", 4));
+
     private transient final ConsoleLogger logger;
     private final Options options;
+    private final RulepackStats rulepackStats = new RulepackStats();
 
     /**
      * Constructs a new FortifyCloudScanExecutor object.
@@ -42,44 +59,160 @@ public class FortifyCloudScanExecutor implements Serializable {
      * @param options The options that will be used during execution
      */
     public FortifyCloudScanExecutor(TaskListener listener, Options options) {
-        this.logger = new ConsoleLogger(listener);
+        this.logger = new ConsoleLogger(listener, options.getLabel());
         this.options = options;
     }
 
     /**
      * Given the specified options, this method will dynamically construct the
      * full command line syntax necessary to execute cloudscan.
+     * @return the command along with the paths of the resolved rulepacks
      */
-    public String prepare() {
+    public PreparedScan prepare() {
+        final List<String> rulePaths = processRules(options.getRules(), options.getWorkspace());
+
         // Generate a list of Strings representing the entire command to execute
         final ArrayList<String> mergedCommand = new ArrayList<String>();
         mergedCommand.add(options.getCommand());
         mergedCommand.addAll(options.getArgs());
-        mergedCommand.addAll(processRules(options.getRules(), options.getWorkspace()));
+        for (String rulePath : rulePaths) {
+            CommandUtil.append(mergedCommand, rulePath, "-rules");
+        }
         mergedCommand.addAll(options.getScanOpts());
 
         // Convert/cast to a String[] so that it can be logged and executed
         final String[] command = mergedCommand.toArray(new String[mergedCommand.size()]);
-        return CommandUtil.generateShellCommand(command);
+
+        String version = null;
+        String versionError = null;
+        try {
+            version = CliVersion.detect(options.getCommand(), options.getPath());
+        } catch (IOException e) {
+            versionError = e.getMessage();
+        }
+        final PreparedScan prepared = new PreparedScan(CommandUtil.generateShellCommand(command), rulePaths, version,
+                versionError, rulepackStats);
+        if (options.getFingerprintIndex() != null) {
+            fingerprint(prepared, rulePaths);
+        }
+        return prepared;
     }
 
     /**
-     * Process the rule arguments by resolving (and optionally downloading) rulepacks
+     * Fingerprints the workspace together with the settings of the scan and the content of the rulepacks
+     * it uses. Cached rulepacks are identified by the digest they are stored by, as using them updates their
+     * modification time; local rulepacks are hashed. A workspace that cannot be fingerprinted is scanned as usual.
+     */
+    private void fingerprint(PreparedScan prepared, List<String> rulePaths) {
+        final List<String> configuration = new ArrayList<String>();
+        configuration.addAll(options.getArgs());
+        configuration.addAll(options.getScanOpts());
+        final List<String> excludes = (options.getFingerprintExcludes() != null)
+                ? options.getFingerprintExcludes() : new ArrayList<String>();
+        try {
+            for (String rulePath : rulePaths) {
+                final File rulepack = new File(rulePath);
+                final String digest = RulepackCache.getContentDigest(rulepack);
+                configuration.add("rulepack:" + ((digest != null) ? digest : SourceFingerprinter.hashContent(rulepack)));
+            }
+            prepared.setFingerprint(SourceFingerprinter.compute(new File(options.getWorkspace()),
+                    new File(options.getFingerprintIndex()), excludes, configuration), null);
+        } catch (IOException e) {
+            prepared.setFingerprint(null, e.getMessage());
+        }
+    }
+
+    /**
+     * Process the rule arguments by resolving (and optionally downloading) rulepacks. Rulepacks are
+     * resolved concurrently, however, the order of the resulting arguments always matches the order
+     * the rules were specified in.
      * @param rules the string array of rulepack locations
-     * @return the command arguments containing resolved rulepack locations
+     * @return the absolute paths of the resolved rulepacks
      */
     private List<String> processRules(List<String> rules, String workspace) {
-        final List<String> command = new ArrayList<String>();
-        final RulepackResolver resolver = new RulepackResolver(logger);
+        final List<String> rulePaths = new ArrayList<String>();
+        final List<String> locations = new ArrayList<String>();
+        for (String rule : rules) {
+            if (StringUtils.isNotBlank(rule)) {
+                locations.add(rule.trim());
+            }
+        }
+        if (locations.isEmpty()) {
+            return rulePaths;
+        }
+        final RulepackResolver resolver = new RulepackResolver(logger, rulepackStats);
         //todo: need to make this configurable for workspace or any other user-defined directory
         //resolver.setTempDir(workspace);
-        for (String rule : rules) {
-            final File file = resolver.resolve(rule);
-            if (file != null) {
-                CommandUtil.append(command, file.getAbsolutePath(), "-rules");
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(locations.size(), RESOLVER_THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "FortifyCloudScan rulepack resolver"));
+        try {
+            final List<Future<File>> futures = new ArrayList<Future<File>>();
+            for (final String location : locations) {
+                futures.add(executorService.submit(new Callable<File>() {
+                    public File call() {
+                        return resolver.resolve(location);
+                    }
+                }));
+            }
+            final List<String> failures = new ArrayList<String>();
+            for (int i = 0; i < futures.size(); i++) {
+                File file = null;
+                try {
+                    file = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.log("ERROR: An unexpected error occurred while resolving rulepack " + locations.get(i));
+                    logger.log(String.valueOf(e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.log("ERROR: Interrupted while resolving rulepacks");
+                    failures.addAll(locations.subList(i, locations.size()));
+                    break;
+                }
+                if (file != null) {
+                    rulePaths.add(file.getAbsolutePath());
+                } else {
+                    failures.add(locations.get(i));
+                    rulepackStats.failure();
+                }
             }
+            if (!failures.isEmpty()) {
+                logger.log("ERROR: " + failures.size() + " of " + locations.size() + " rulepacks could not be resolved:");
+                for (String failure : failures) {
+                    logger.log("ERROR:   " + failure);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return rulePaths;
+    }
+
+    /**
+     * Prepares a scan on the node it will run on. Only the options are sent to the node and the command,
+     * the resolved rulepacks, the version of cloudscan and the fingerprint of the workspace are returned
+     * in a single response.
+     */
+    public static final class Prepare extends MasterToSlaveCallable<PreparedScan, IOException> {
+
+        private static final long serialVersionUID = -8251769357212738954L;
+
+        private final TaskListener listener;
+        private final Options options;
+
+        /**
+         * Constructs a new Prepare callable.
+         *
+         * @param listener TaskListener the output of the node is sent to
+         * @param options The options that will be used during execution
+         */
+        public Prepare(TaskListener listener, Options options) {
+            this.listener = listener;
+            this.options = options;
+        }
+
+        public PreparedScan call() throws IOException {
+            return new FortifyCloudScanExecutor(listener, options).prepare();
         }
-        return command;
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.Builder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
+import jenkins.tasks.SimpleBuildStep;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Submits one CloudScan job per module of a build concurrently. Every target is scanned with the
+ * shared settings of a {@link FortifyCloudScanBuilder}, overridden by the settings of the target.
+ * The output of each target is prefixed with its build id and the build result is the worst
+ * result of all targets.
+ */
+public class FortifyCloudScanParallelBuilder extends Builder implements SimpleBuildStep, Serializable {
+
+    private static final long serialVersionUID = -2519306183625916405L;
+
+    static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final FortifyCloudScanBuilder scan;
+    private final List<ScanTarget> targets;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    @DataBoundConstructor
+    public FortifyCloudScanParallelBuilder(FortifyCloudScanBuilder scan, List<ScanTarget> targets) {
+        this.scan = scan;
+        this.targets = (targets != null) ? new ArrayList<ScanTarget>(targets) : new ArrayList<ScanTarget>();
+    }
+
+    /**
+     * Retrieves the settings shared by all targets.
+     */
+    public FortifyCloudScanBuilder getScan() {
+        return scan;
+    }
+
+    /**
+     * Retrieves the targets to scan.
+     */
+    public List<ScanTarget> getTargets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Retrieves the maximum number of targets submitted concurrently.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = (maxConcurrency > 0) ? maxConcurrency : DEFAULT_MAX_CONCURRENCY;
+    }
+
+    /**
+     * This method is called whenever the build step is executed.
+     *
+     * @param build    A Run object
+     * @param filePath A FilePath object
+     * @param launcher A Launcher object
+     * @param listener A BuildListener object
+     */
+    @Override
+    public void perform(@Nonnull final Run<?, ?> build,
+                        @Nonnull final FilePath filePath,
+                        @Nonnull final Launcher launcher,
+                        @Nonnull final TaskListener listener) throws InterruptedException, IOException {
+
+        final ConsoleLogger logger = new ConsoleLogger(listener);
+        if (scan == null || targets.isEmpty()) {
+            logger.log(Messages.parallel_noTargets());
+            return;
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(maxConcurrency, targets.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "FortifyCloudScan " + build.getFullDisplayName()));
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        try {
+            for (final ScanTarget target : targets) {
+                final FortifyCloudScanBuilder builder = scan.forTarget(target);
+                futures.add(executorService.submit(new Callable<Result>() {
+                    public Result call() throws Exception {
+                        final ConsoleLogger targetLogger = new ConsoleLogger(listener, builder.getBuildId());
+                        return builder.scan(build, filePath, launcher, listener, targetLogger);
+                    }
+                }));
+            }
+            Result result = Result.SUCCESS;
+            for (int i = 0; i < futures.size(); i++) {
+                final String buildId = scan.forTarget(targets.get(i)).getBuildId();
+                Result targetResult;
+                try {
+                    targetResult = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.log("ERROR: An unexpected error occurred while scanning " + buildId);
+                    logger.log(String.valueOf(e.getCause()));
+                    targetResult = Result.FAILURE;
+                }
+                logger.log(Messages.parallel_targetResult(buildId, targetResult));
+                result = result.combine(targetResult);
+            }
+            build.setResult(result);
+        } finally {
+            // Interrupts scans still running when the build is aborted, which terminates their processes
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Descriptor for {@link FortifyCloudScanParallelBuilder}.
+     */
+    @Extension @Symbol("fortifyCloudScanParallel")
+    public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+
+        public DescriptorImpl() {
+            super(FortifyCloudScanParallelBuilder.class);
+        }
+
+        public boolean isApplicable(Class<? extends AbstractProject> aClass) {
+            return true;
+        }
+
+        /**
+         * This name is used on the build configuration screen.
+         */
+        public String getDisplayName() {
+            return Messages.ParallelBuilder_Name();
+        }
+
+        public FormValidation doCheckMaxConcurrency(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value.trim()) > 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error(Messages.parallel_invalidConcurrency());
+            }
+            return FormValidation.error(Messages.parallel_invalidConcurrency());
+        }
+    }
+
+}
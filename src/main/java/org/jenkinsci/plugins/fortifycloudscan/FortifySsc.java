@@ -17,18 +17,32 @@ package org.jenkinsci.plugins.fortifycloudscan;
 
 import com.fortify.schema.fws.ActiveProjectVersionListRequestDocument;
 import com.fortify.schema.fws.ActiveProjectVersionListResponseDocument;
+import com.fortify.schema.fws.CloudCtrlUrlRequestDocument;
+import com.fortify.schema.fws.CloudCtrlUrlResponseDocument;
+import com.fortify.schema.fws.CreateAuditSessionRequestDocument;
+import com.fortify.schema.fws.CreateAuditSessionResponseDocument;
+import com.fortify.schema.fws.InvalidateAuditSessionRequestDocument;
+import com.fortify.schema.fws.InvalidateAuditSessionResponseDocument;
+import com.fortify.schema.fws.IssueListRequestDocument;
 import com.fortify.schema.fws.ProjectListRequestDocument;
 import com.fortify.schema.fws.ProjectListResponseDocument;
+import com.fortify.schema.issuemanagement.IssueListDescription;
 import com.fortifysoftware.schema.wsTypes.Project;
 import com.fortifysoftware.schema.wsTypes.ProjectVersionLite;
 import org.apache.xmlbeans.XmlException;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A wrapper class that queries SSC and returns various supported objects.
@@ -44,6 +58,10 @@ public class FortifySsc {
         this.client = new FortifySscClient(url, token);
     }
 
+    FortifySsc(FortifySscClient client) {
+        this.client = client;
+    }
+
     /**
      * Returns a list of all Project defined on SSC.
      */
@@ -53,37 +71,209 @@ public class FortifySsc {
         final ProjectListRequestDocument requestDocument = ProjectListRequestDocument.Factory.newInstance();
         requestDocument.addNewProjectListRequest();
         final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
-        final SOAPMessage soapResponse = client.callEndpoint(soapRequest);
-        final ProjectListResponseDocument responseDocument = client.parseMessage(soapResponse, ProjectListResponseDocument.class);
+        final ProjectListResponseDocument responseDocument = client.callEndpoint(soapRequest, ProjectListResponseDocument.class);
         final ProjectListResponseDocument.ProjectListResponse projectList = responseDocument.getProjectListResponse();
         return Arrays.asList(projectList.getProjectArray());
     }
 
     /**
      * Returns a list of all project versions for the specified project id defined on SSC.
+     * Callers requesting versions for more than one project should use
+     * {@link #getActiveProjectVersionIndex()} so the version list is only retrieved once.
      */
     public List<ProjectVersionLite> getActiveProjectVersions(long projectId) throws SOAPException, IOException,
             XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
 
-        /*
-        todo: investigate is there's a better way to do this. This method queries on all project versions,
-        iterates through them and matches the specified project id. There should be a SOAP call that makes
-        SSC do the hard work for us.
-         */
-        final List<ProjectVersionLite> projectVersions = new ArrayList<ProjectVersionLite>();
+        final List<ProjectVersionLite> projectVersions = getActiveProjectVersionIndex().get(projectId);
+        return (projectVersions != null) ? projectVersions : Collections.<ProjectVersionLite>emptyList();
+    }
+
+    /**
+     * Returns all active project versions defined on SSC, indexed by the id of the project they belong to.
+     *
+     * SSC does not offer an operation to retrieve the versions of a single project by its id
+     * (SearchProjectVersion requires both the project and version name, GetProjectVersionIdentifiers
+     * is not filtered either), so the complete list is retrieved once and grouped here.
+     */
+    public Map<Long, List<ProjectVersionLite>> getActiveProjectVersionIndex() throws SOAPException, IOException,
+            XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
+
         final ActiveProjectVersionListRequestDocument requestDocument = ActiveProjectVersionListRequestDocument.Factory.newInstance();
         requestDocument.addNewActiveProjectVersionListRequest();
         final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
-        final SOAPMessage soapResponse = client.callEndpoint(soapRequest);
-        final ActiveProjectVersionListResponseDocument responseDocument = client.parseMessage(soapResponse, ActiveProjectVersionListResponseDocument.class);
+        final ActiveProjectVersionListResponseDocument responseDocument = client.callEndpoint(soapRequest, ActiveProjectVersionListResponseDocument.class);
         final ActiveProjectVersionListResponseDocument.ActiveProjectVersionListResponse activeProjectVersions = responseDocument.getActiveProjectVersionListResponse();
-        final List<ProjectVersionLite> plist = Arrays.asList(activeProjectVersions.getProjectVersionArray());
-        for (ProjectVersionLite projectVersion: plist) {
-           if (projectVersion.getProjectId() == projectId) {
-               projectVersions.add(projectVersion);
-           }
+        final Map<Long, List<ProjectVersionLite>> index = new HashMap<Long, List<ProjectVersionLite>>();
+        for (ProjectVersionLite projectVersion: activeProjectVersions.getProjectVersionArray()) {
+            List<ProjectVersionLite> projectVersions = index.get(projectVersion.getProjectId());
+            if (projectVersions == null) {
+                projectVersions = new ArrayList<ProjectVersionLite>();
+                index.put(projectVersion.getProjectId(), projectVersions);
+            }
+            projectVersions.add(projectVersion);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the URL of the CloudScan controller SSC is configured to use.
+     */
+    public String getCloudControllerUrl() throws SOAPException, IOException, XmlException, NoSuchFieldException,
+            IllegalAccessException, FortifySscClientException {
+
+        final CloudCtrlUrlRequestDocument requestDocument = CloudCtrlUrlRequestDocument.Factory.newInstance();
+        requestDocument.addNewCloudCtrlUrlRequest();
+        final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
+        final CloudCtrlUrlResponseDocument responseDocument = client.callEndpoint(soapRequest, CloudCtrlUrlResponseDocument.class);
+        return responseDocument.getCloudCtrlUrlResponse().getUrl();
+    }
+
+    /**
+     * Counts the issues of the specified project version that are neither suppressed, hidden nor removed.
+     *
+     * The issues are requested one page at a time in an audit session, and every page is counted while
+     * it is being received rather than loaded, so the memory used does not depend on the number of issues
+     * of the version. Paging stops at the first page that is not full. As SSC versions differ in whether
+     * the first page is 0 or 1, a page starting with the same issue as the previous page is not counted
+     * again and ends the listing as well.
+     * @param versionId the id of the project version
+     * @param pageSize the number of issues requested per page
+     * @return the issues counted by priority and category
+     */
+    public FprSummary countIssues(long versionId, int pageSize) throws SOAPException, IOException, XmlException,
+            NoSuchFieldException, IllegalAccessException, FortifySscClientException {
+
+        final String sessionId = createAuditSession(versionId);
+        try {
+            final FprSummary summary = new FprSummary();
+            String previousFirstId = null;
+            int page = 0;
+            while (true) {
+                final IssuePage issues = getIssuePage(sessionId, versionId, page, pageSize);
+                if (issues.size == 0 || (previousFirstId != null && previousFirstId.equals(issues.firstInstanceId))) {
+                    break;
+                }
+                summary.addAll(issues.summary);
+                if (issues.size < pageSize) {
+                    break;
+                }
+                previousFirstId = issues.firstInstanceId;
+                page++;
+            }
+            return summary;
+        } finally {
+            invalidateAuditSession(sessionId);
+        }
+    }
+
+    /**
+     * Creates an audit session for the specified project version, which is required to list its issues.
+     */
+    String createAuditSession(long versionId) throws SOAPException, IOException, XmlException, NoSuchFieldException,
+            IllegalAccessException, FortifySscClientException {
+
+        final CreateAuditSessionRequestDocument requestDocument = CreateAuditSessionRequestDocument.Factory.newInstance();
+        requestDocument.addNewCreateAuditSessionRequest().setProjectVersionId(versionId);
+        final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
+        final CreateAuditSessionResponseDocument responseDocument = client.callEndpoint(soapRequest, CreateAuditSessionResponseDocument.class);
+        return responseDocument.getCreateAuditSessionResponse().getSessionId();
+    }
+
+    /**
+     * Releases an audit session on SSC.
+     */
+    void invalidateAuditSession(String sessionId) throws SOAPException, IOException, XmlException, NoSuchFieldException,
+            IllegalAccessException, FortifySscClientException {
+
+        final InvalidateAuditSessionRequestDocument requestDocument = InvalidateAuditSessionRequestDocument.Factory.newInstance();
+        requestDocument.addNewInvalidateAuditSessionRequest().setSessionId(sessionId);
+        final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
+        client.callEndpoint(soapRequest, InvalidateAuditSessionResponseDocument.class);
+    }
+
+    /**
+     * Requests a single page of issues and counts them while the response is being received.
+     */
+    private IssuePage getIssuePage(String sessionId, long versionId, int page, int pageSize) throws SOAPException,
+            IOException, XmlException, FortifySscClientException {
+
+        final IssueListRequestDocument requestDocument = IssueListRequestDocument.Factory.newInstance();
+        final IssueListRequestDocument.IssueListRequest request = requestDocument.addNewIssueListRequest();
+        request.setSessionId(sessionId);
+        request.addNewProjectIdentifier().setProjectVersionId(versionId);
+        final IssueListDescription description = request.addNewIssueListDescription();
+        description.setStartPage(page);
+        description.setPageSize(pageSize);
+        description.setIncludeSuppressed(false);
+        description.setIncludeHidden(false);
+        description.setIncludeRemoved(false);
+        final SOAPMessage soapRequest = client.createSoapMessage(requestDocument);
+        return client.callEndpoint(soapRequest, new IssuePageReader());
+    }
+
+    /**
+     * The issues of a single page of an issue listing.
+     */
+    private static final class IssuePage {
+        private final FprSummary summary = new FprSummary();
+        private String firstInstanceId;
+        private int size;
+    }
+
+    /**
+     * Counts the issues of an <tt>IssueListResponse</tt>. Only the class and instance information of each
+     * issue is read, everything else (audit history, comments, locations, ...) is skipped by the parser.
+     */
+    private static final class IssuePageReader implements SoapResponseDecoder.BodyReader<IssuePage> {
+
+        public IssuePage read(XMLStreamReader reader) throws XMLStreamException {
+            final IssuePage page = new IssuePage();
+            boolean inIssue = false;
+            boolean inClassInfo = false;
+            String type = null;
+            String subtype = null;
+            float severity = 0;
+            float confidence = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (!inIssue && "Issue".equals(name)) {
+                        inIssue = true;
+                        type = null;
+                        subtype = null;
+                        severity = 0;
+                        confidence = 0;
+                        if (page.firstInstanceId == null) {
+                            page.firstInstanceId = reader.getAttributeValue(null, "instanceId");
+                        }
+                    } else if (!inIssue) {
+                        continue;
+                    } else if ("ClassInfo".equals(name)) {
+                        inClassInfo = true;
+                    } else if (inClassInfo && "Type".equals(name)) {
+                        type = reader.getElementText().trim();
+                    } else if (inClassInfo && "SubType".equals(name)) {
+                        subtype = reader.getElementText().trim();
+                    } else if ("InstanceInfo".equals(name)) {
+                        severity = FprSummarizer.parse(String.valueOf(reader.getAttributeValue(null, "severity")));
+                        confidence = FprSummarizer.parse(String.valueOf(reader.getAttributeValue(null, "confidence")));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if ("ClassInfo".equals(name)) {
+                        inClassInfo = false;
+                    } else if (inIssue && "Issue".equals(name)) {
+                        page.summary.add(FprSummarizer.category(type, subtype), severity, confidence);
+                        page.size++;
+                        inIssue = false;
+                    } else if ("Issues".equals(name)) {
+                        break;
+                    }
+                }
+            }
+            return page;
         }
-        return projectVersions;
     }
 
 }
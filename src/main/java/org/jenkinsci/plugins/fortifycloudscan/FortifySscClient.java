@@ -19,10 +19,7 @@ import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.w3c.dom.Document;
 import javax.xml.namespace.QName;
-import javax.xml.soap.MessageFactory;
 import javax.xml.soap.SOAPBody;
-import javax.xml.soap.SOAPConnection;
-import javax.xml.soap.SOAPConnectionFactory;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
@@ -31,7 +28,6 @@ import javax.xml.soap.SOAPHeader;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.net.URL;
 
 
@@ -52,6 +48,7 @@ public class FortifySscClient {
     private String sscToken;
     private String sscUsername;
     private String sscPassword;
+    private SoapTransport transport;
 
     /**
      * Constructs a new FortifySscClient object using traditional username/password authentication
@@ -75,6 +72,28 @@ public class FortifySscClient {
         this.sscToken = sscToken;
     }
 
+    /**
+     * Constructs a new FortifySscClient object using token based authentication which sends
+     * requests with the specified transport, rather than the transport shared by the JVM.
+     * @param endpointUrl The URL to the Fortify SSC server's SOAP endpoint
+     * @param sscToken The token to authenticate with
+     * @param transport The transport to send requests with
+     */
+    FortifySscClient(URL endpointUrl, String sscToken, SoapTransport transport) {
+        this(endpointUrl, sscToken);
+        this.transport = transport;
+    }
+
+    /**
+     * Returns the transport to send requests with.
+     */
+    private synchronized SoapTransport getTransport() throws SOAPException {
+        if (transport == null) {
+            transport = SoapTransport.getInstance();
+        }
+        return transport;
+    }
+
     /**
      * Create a new SOAP message from the specified XMLBeans object. The XmlObject
      * will be injected into the SOAP Body.
@@ -83,9 +102,7 @@ public class FortifySscClient {
      * @throws SOAPException
      */
     public SOAPMessage createSoapMessage(XmlObject xmlObject) throws SOAPException {
-        final MessageFactory msgFactory = MessageFactory.newInstance();
-
-        final SOAPMessage soapMessage = msgFactory.createMessage();
+        final SOAPMessage soapMessage = getTransport().createMessage();
         final SOAPPart prt = soapMessage.getSOAPPart();
         final SOAPEnvelope env = prt.getEnvelope();
         addWssHeader(env);
@@ -131,18 +148,93 @@ public class FortifySscClient {
     }
 
     /**
-     * Makes a remote call to the SOAP endpoint.
+     * Makes a remote call to the SOAP endpoint over the pooled transport.
      * @param soapMessage The SOAP message to send to the endpoint
      * @return a SOAPMessage as a response
      * @throws SOAPException
      * @throws IOException
      */
     public SOAPMessage callEndpoint(SOAPMessage soapMessage) throws SOAPException, IOException {
-        final SOAPConnectionFactory fact = SOAPConnectionFactory.newInstance();
-        final SOAPConnection con = fact.createConnection();
-        final SOAPMessage response = con.call(soapMessage, endpointUrl);
-        con.close();
-        return response;
+        final String operation = getOperation(soapMessage);
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final SOAPMessage response = getTransport().call(soapMessage, endpointUrl);
+            success = true;
+            return response;
+        } finally {
+            recordCall(operation, start, success);
+        }
+    }
+
+    /**
+     * Makes a remote call to the SOAP endpoint and decodes the response as the specified
+     * XMLBeans type in a single pass, without building a SAAJ message for the response.
+     * @param soapMessage The SOAP message to send to the endpoint
+     * @param clazz The XmlObject class (in XMLBeans) for parsing and casting
+     * @return the body of the response as the specified XmlObject implementation
+     * @throws FortifySscClientException if SSC returned a SOAP fault
+     */
+    public <T> T callEndpoint(SOAPMessage soapMessage, Class<T> clazz) throws SOAPException, IOException,
+            XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
+
+        final String operation = getOperation(soapMessage);
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final T response = getTransport().call(soapMessage, endpointUrl, clazz);
+            success = true;
+            return response;
+        } finally {
+            recordCall(operation, start, success);
+        }
+    }
+
+    /**
+     * Makes a remote call to the SOAP endpoint and reads the body of the response with the specified
+     * reader while it is being received. Used for responses that are too large to load as a whole.
+     * @param soapMessage The SOAP message to send to the endpoint
+     * @param bodyReader reads the contents of the SOAP Body
+     * @return the value returned by the body reader
+     * @throws FortifySscClientException if SSC returned a SOAP fault
+     */
+    <T> T callEndpoint(SOAPMessage soapMessage, SoapResponseDecoder.BodyReader<T> bodyReader)
+            throws SOAPException, IOException, XmlException, FortifySscClientException {
+
+        final String operation = getOperation(soapMessage);
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final T response = getTransport().call(soapMessage, endpointUrl, bodyReader);
+            success = true;
+            return response;
+        } finally {
+            recordCall(operation, start, success);
+        }
+    }
+
+    /**
+     * Returns the name of the operation a request invokes, e.g. <tt>ProjectList</tt> for a
+     * <tt>ProjectListRequest</tt>.
+     */
+    private static String getOperation(SOAPMessage soapMessage) throws SOAPException {
+        org.w3c.dom.Node node = soapMessage.getSOAPBody().getFirstChild();
+        while (node != null && node.getNodeType() != org.w3c.dom.Node.ELEMENT_NODE) {
+            node = node.getNextSibling();
+        }
+        if (node == null) {
+            return "unknown";
+        }
+        final String name = (node.getLocalName() != null) ? node.getLocalName() : node.getNodeName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+
+    private static void recordCall(String operation, long start, boolean success) {
+        final PluginMetrics metrics = PluginMetrics.get();
+        metrics.record(PluginMetrics.SSC_REQUEST_DURATION, System.currentTimeMillis() - start, "operation", operation);
+        if (!success) {
+            metrics.increment(PluginMetrics.SSC_REQUEST_ERRORS, "operation", operation);
+        }
     }
 
     /**
@@ -155,14 +247,12 @@ public class FortifySscClient {
     public <T> T parseMessage(SOAPMessage soapMessage, Class<T> clazz)
             throws SOAPException, XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
 
-        final XmlObject b = XmlObject.Factory.parse(soapMessage.getSOAPBody().getFirstChild());
-        final Field typeField = clazz.getDeclaredField("type");
-        final org.apache.xmlbeans.SchemaType schemaType = (org.apache.xmlbeans.SchemaType)typeField.get(null);
+        final org.apache.xmlbeans.SchemaType schemaType = SoapResponseDecoder.getSchemaType(clazz);
         final SOAPFault fault = soapMessage.getSOAPBody().getFault();
         if (fault != null) {
             throw new FortifySscClientException(fault.getFaultString());
         }
-        final XmlObject c = org.apache.xmlbeans.XmlBeans.getContextTypeLoader().parse(b.getDomNode(), schemaType, null);
+        final XmlObject c = org.apache.xmlbeans.XmlBeans.getContextTypeLoader().parse(soapMessage.getSOAPBody().getFirstChild(), schemaType, null);
         return clazz.cast(c);
     }
 
@@ -0,0 +1,152 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.lang.StringUtils;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Summarizes the issues of an FPR on the node the FPR is stored on. The <tt>audit.fvdl</tt> entry is
+ * streamed straight out of the archive into a StAX reader, only the few values needed per issue are
+ * kept and reading stops at the end of the vulnerabilities, so neither the archive nor the FVDL is
+ * ever extracted or held in memory.
+ */
+public class FprSummarizer extends MasterToSlaveFileCallable<FprSummary> {
+
+    private static final long serialVersionUID = 8360513957206133785L;
+
+    private static final String AUDIT_FVDL = "audit.fvdl";
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public FprSummary invoke(File fpr, VirtualChannel channel) throws IOException, InterruptedException {
+        try (ZipFile zip = new ZipFile(fpr)) {
+            final ZipEntry entry = zip.getEntry(AUDIT_FVDL);
+            if (entry == null) {
+                throw new IOException(fpr.getName() + " does not contain " + AUDIT_FVDL);
+            }
+            try (InputStream input = new BufferedInputStream(zip.getInputStream(entry))) {
+                return summarize(input);
+            }
+        }
+    }
+
+    /**
+     * Counts the issues of the FVDL read from the specified stream.
+     * @param input the stream containing the FVDL. The stream is not closed.
+     * @return the summary of the issues
+     * @throws IOException if the FVDL cannot be parsed
+     */
+    static FprSummary summarize(InputStream input) throws IOException {
+        final FprSummary summary = new FprSummary();
+        try {
+            final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+            try {
+                boolean inVulnerability = false;
+                boolean inClassInfo = false;
+                String type = null;
+                String subtype = null;
+                float defaultSeverity = 0;
+                float instanceSeverity = -1;
+                float confidence = 0;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("Vulnerability".equals(name)) {
+                            inVulnerability = true;
+                            type = null;
+                            subtype = null;
+                            defaultSeverity = 0;
+                            instanceSeverity = -1;
+                            confidence = 0;
+                        } else if (!inVulnerability) {
+                            continue;
+                        } else if ("ClassInfo".equals(name)) {
+                            inClassInfo = true;
+                        } else if (inClassInfo && "Type".equals(name)) {
+                            type = reader.getElementText().trim();
+                        } else if (inClassInfo && "Subtype".equals(name)) {
+                            subtype = reader.getElementText().trim();
+                        } else if (inClassInfo && "DefaultSeverity".equals(name)) {
+                            defaultSeverity = parse(reader.getElementText());
+                        } else if ("InstanceSeverity".equals(name)) {
+                            instanceSeverity = parse(reader.getElementText());
+                        } else if ("Confidence".equals(name)) {
+                            confidence = parse(reader.getElementText());
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("ClassInfo".equals(name)) {
+                            inClassInfo = false;
+                        } else if (inVulnerability && "Vulnerability".equals(name)) {
+                            summary.add(category(type, subtype), (instanceSeverity >= 0) ? instanceSeverity : defaultSeverity,
+                                    confidence);
+                            inVulnerability = false;
+                        } else if ("Vulnerabilities".equals(name)) {
+                            // The remainder of the FVDL (snippets, descriptions, ...) is not needed
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse " + AUDIT_FVDL + ": " + e.getMessage(), e);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the category of an issue as shown by Audit Workbench and SSC.
+     */
+    static String category(String type, String subtype) {
+        if (StringUtils.isBlank(type)) {
+            return "Unknown";
+        }
+        return StringUtils.isBlank(subtype) ? type : type + ": " + subtype;
+    }
+
+    /**
+     * Parses a severity or confidence, which is 0 if it is not a number.
+     */
+    static float parse(String value) {
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
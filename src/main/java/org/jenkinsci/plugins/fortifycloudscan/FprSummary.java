@@ -0,0 +1,182 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the issues of an FPR by severity and category. The number of categories is bounded, issues
+ * of further categories are counted together, so a summary uses constant memory however large the
+ * FPR is.
+ *
+ * Severities follow the four Fortify priority quadrants: an issue has a high impact if its severity
+ * is at least 2.5 and a high likelihood if its confidence is at least 2.5 (both range from 0 to 5).
+ * The FVDL does not contain the rule metadata SSC uses to calculate priorities, so the counts are
+ * an approximation of what SSC shows.
+ */
+public class FprSummary implements Serializable {
+
+    private static final long serialVersionUID = -1738290471603720517L;
+
+    /**
+     * The maximum number of categories counted separately
+     */
+    static final int MAX_CATEGORIES = Integer.getInteger(FprSummary.class.getName() + ".maxCategories", 200);
+
+    private static final float HIGH = 2.5f;
+
+    private int total;
+    private int critical;
+    private int high;
+    private int medium;
+    private int low;
+    private final Map<String, Integer> categories = new HashMap<String, Integer>();
+    private int otherCategories;
+
+    /**
+     * Counts an issue.
+     * @param category the category of the issue
+     * @param severity the severity of the issue, from 0 to 5
+     * @param confidence the confidence of the issue, from 0 to 5
+     */
+    void add(String category, float severity, float confidence) {
+        total++;
+        if (severity >= HIGH) {
+            if (confidence >= HIGH) {
+                critical++;
+            } else {
+                high++;
+            }
+        } else if (confidence >= HIGH) {
+            medium++;
+        } else {
+            low++;
+        }
+        final Integer count = categories.get(category);
+        if (count != null) {
+            categories.put(category, count + 1);
+        } else if (categories.size() < MAX_CATEGORIES) {
+            categories.put(category, 1);
+        } else {
+            otherCategories++;
+        }
+    }
+
+    /**
+     * Adds the counts of another summary to this summary. Categories are added in the order of the
+     * other summary, so the number of categories remains bounded.
+     * @param other the summary to add
+     */
+    void addAll(FprSummary other) {
+        total += other.total;
+        critical += other.critical;
+        high += other.high;
+        medium += other.medium;
+        low += other.low;
+        otherCategories += other.otherCategories;
+        for (Map.Entry<String, Integer> entry : other.categories.entrySet()) {
+            final Integer count = categories.get(entry.getKey());
+            if (count != null) {
+                categories.put(entry.getKey(), count + entry.getValue());
+            } else if (categories.size() < MAX_CATEGORIES) {
+                categories.put(entry.getKey(), entry.getValue());
+            } else {
+                otherCategories += entry.getValue();
+            }
+        }
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCritical() {
+        return critical;
+    }
+
+    public int getHigh() {
+        return high;
+    }
+
+    public int getMedium() {
+        return medium;
+    }
+
+    public int getLow() {
+        return low;
+    }
+
+    /**
+     * Returns the number of issues in categories beyond the maximum number of categories counted separately.
+     */
+    public int getOtherCategories() {
+        return otherCategories;
+    }
+
+    /**
+     * Returns the categories, the category with the most issues first.
+     */
+    public List<Category> getCategories() {
+        final List<Category> list = new ArrayList<Category>();
+        for (Map.Entry<String, Integer> entry : categories.entrySet()) {
+            list.add(new Category(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(list, new Comparator<Category>() {
+            public int compare(Category a, Category b) {
+                final int result = Integer.compare(b.count, a.count);
+                return (result != 0) ? result : a.name.compareTo(b.name);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Returns the specified number of categories with the most issues.
+     */
+    public List<Category> getTopCategories(int count) {
+        final List<Category> list = getCategories();
+        return (list.size() > count) ? list.subList(0, count) : list;
+    }
+
+    /**
+     * The number of issues in a category.
+     */
+    public static final class Category {
+
+        private final String name;
+        private final int count;
+
+        Category(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Shows the issues found by a CloudScan job, summarized from the FPR retrieved after the scan.
+ */
+public class FprSummaryAction implements RunAction2 {
+
+    /**
+     * The number of categories shown in the summary on the build page
+     */
+    static final int TOP_CATEGORIES = 10;
+
+    private final String fprName;
+    private final String label;
+    private final FprSummary summary;
+    private transient Run<?, ?> run;
+
+    /**
+     * Constructs a new FprSummaryAction.
+     * @param fprName the name of the FPR
+     * @param label the label of the scan (the build id for scans of multiple targets), or null
+     * @param summary the summary of the issues in the FPR
+     */
+    public FprSummaryAction(String fprName, String label, FprSummary summary) {
+        this.fprName = fprName;
+        this.label = label;
+        this.summary = summary;
+    }
+
+    public String getFprName() {
+        return fprName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public FprSummary getSummary() {
+        return summary;
+    }
+
+    public int getTopCategories() {
+        return TOP_CATEGORIES;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "document.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return (label != null) ? Messages.FprSummaryAction_DisplayNameLabel(label) : Messages.FprSummaryAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return (label != null) ? "cloudScanIssues-" + label.replaceAll("[^\\w.-]", "_") : "cloudScanIssues";
+    }
+
+}
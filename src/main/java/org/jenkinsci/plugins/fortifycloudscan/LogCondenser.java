@@ -0,0 +1,144 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Condenses the output of cloudscan before it is written to the build log. Lines are collected in a
+ * buffer and written in blocks rather than one by one. Consecutive lines that only differ in their
+ * numbers (progress and poll lines such as <tt>Uploading 45%</tt> or <tt>Job status: RUNNING</tt>)
+ * are collapsed: the first is written, the others are counted and summarized together with the last
+ * of them once a different line arrives, or periodically while they keep coming.
+ */
+final class LogCondenser {
+
+    /**
+     * The number of characters buffered before they are written to the build log
+     */
+    static final int BUFFER_SIZE = Integer.getInteger(ConsoleLogger.class.getName() + ".condensedBufferSize", 16384);
+
+    /**
+     * The interval at which lines that keep repeating are summarized
+     */
+    static final long SUMMARY_INTERVAL = TimeUnit.SECONDS.toMillis(
+            Long.getLong(ConsoleLogger.class.getName() + ".condensedSummarySeconds", 60));
+
+    private final PrintStream out;
+    private final String prefix;
+    private final StringBuilder buffer = new StringBuilder();
+    private String lastShape;
+    private String lastLine;
+    private int suppressed;
+
+    /**
+     * The time the first line collapsed since the last summary arrived
+     */
+    private long collapsedSince;
+
+    LogCondenser(PrintStream out, String prefix) {
+        this.out = out;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Adds a line of output.
+     * @param line the line, without its line terminator
+     */
+    synchronized void line(String line) {
+        final long now = System.currentTimeMillis();
+        final String shape = shape(line);
+        if (shape.equals(lastShape)) {
+            if (suppressed++ == 0) {
+                collapsedSince = now;
+            }
+            lastLine = line;
+            if (now - collapsedSince >= SUMMARY_INTERVAL) {
+                summarize();
+            }
+        } else {
+            summarize();
+            lastShape = shape;
+            append(line);
+        }
+        if (buffer.length() >= BUFFER_SIZE) {
+            write();
+        }
+    }
+
+    /**
+     * Writes everything that is buffered to the build log, without summarizing lines that are still repeating.
+     */
+    synchronized void flush() {
+        write();
+    }
+
+    /**
+     * Summarizes lines that were collapsed and writes everything that is buffered to the build log.
+     * The next line is written in full, even if it is similar to the last one.
+     */
+    synchronized void finish() {
+        summarize();
+        lastShape = null;
+        write();
+    }
+
+    private void summarize() {
+        if (suppressed > 0) {
+            append(Messages.condensed_similarLines(suppressed, lastLine));
+            suppressed = 0;
+        }
+    }
+
+    private void append(String line) {
+        buffer.append(prefix).append(line).append(System.lineSeparator());
+    }
+
+    private void write() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        // A single write for the whole block, other loggers may share the same stream
+        synchronized (out) {
+            out.print(buffer);
+            out.flush();
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * Returns the line with every run of digits replaced, so lines reporting progress are considered similar.
+     */
+    static String shape(String line) {
+        final StringBuilder sb = new StringBuilder(line.length());
+        boolean digits = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (Character.isDigit(c)) {
+                if (!digits) {
+                    sb.append('#');
+                    digits = true;
+                }
+            } else {
+                sb.append(c);
+                digits = false;
+            }
+        }
+        return sb.toString().trim();
+    }
+
+}
@@ -17,26 +17,28 @@ package org.jenkinsci.plugins.fortifycloudscan;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.Map;
 
 public class Options implements Serializable {
 
     private static final long serialVersionUID = 4339433732415820879L;
 
-    private Map envVars;
+    private String path;
     private String command;
     private List<String> args;
     private List<String> rules;
     private List<String> scanOpts;
     private String workspace;
+    private String label;
+    private String fingerprintIndex;
+    private List<String> fingerprintExcludes;
 
 
-    public Map getEnvVars() {
-        return envVars;
+    public String getPath() {
+        return path;
     }
 
-    public void setEnvVars(Map envVars) {
-        this.envVars = envVars;
+    public void setPath(String path) {
+        this.path = path;
     }
 
     public String getCommand() {
@@ -79,4 +81,31 @@ public class Options implements Serializable {
         this.workspace = workspace;
     }
 
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the path of the index the source fingerprint is kept in, or null to not fingerprint the workspace.
+     */
+    public String getFingerprintIndex() {
+        return fingerprintIndex;
+    }
+
+    public void setFingerprintIndex(String fingerprintIndex) {
+        this.fingerprintIndex = fingerprintIndex;
+    }
+
+    public List<String> getFingerprintExcludes() {
+        return fingerprintExcludes;
+    }
+
+    public void setFingerprintExcludes(List<String> fingerprintExcludes) {
+        this.fingerprintExcludes = fingerprintExcludes;
+    }
+
 }
@@ -0,0 +1,372 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Performance metrics of the plugin, kept for the lifetime of the controller JVM. Counters and
+ * histograms are lock-free ({@link LongAdder} based) so recording is cheap on hot paths; a series
+ * is only created (once) the first time a combination of labels is seen. Latencies are recorded
+ * in milliseconds into power-of-two buckets, which bounds the relative error of a quantile to a
+ * factor of two while keeping a histogram to a fixed 25 counters.
+ */
+public final class PluginMetrics {
+
+    static final String SCANS_SUBMITTED = "fortify_cloudscan_scans_submitted_total";
+    static final String SCANS_SUCCEEDED = "fortify_cloudscan_scans_succeeded_total";
+    static final String SCANS_FAILED = "fortify_cloudscan_scans_failed_total";
+    static final String SCANS_SKIPPED = "fortify_cloudscan_scans_skipped_total";
+    static final String SCAN_DURATION = "fortify_cloudscan_scan_duration_seconds";
+    static final String SUBMISSION_WAIT = "fortify_cloudscan_submission_wait_seconds";
+    static final String RULEPACK_CACHE_HITS = "fortify_cloudscan_rulepack_cache_hits_total";
+    static final String RULEPACK_CACHE_MISSES = "fortify_cloudscan_rulepack_cache_misses_total";
+    static final String RULEPACK_DOWNLOADED_BYTES = "fortify_cloudscan_rulepack_downloaded_bytes_total";
+    static final String RULEPACK_FAILURES = "fortify_cloudscan_rulepack_failures_total";
+    static final String SSC_REQUEST_DURATION = "fortify_cloudscan_ssc_request_duration_seconds";
+    static final String SSC_REQUEST_ERRORS = "fortify_cloudscan_ssc_request_errors_total";
+    static final String HTTP_CONNECTIONS_CREATED = "fortify_cloudscan_http_connections_created_total";
+    static final String HTTP_CONNECTIONS_REUSED = "fortify_cloudscan_http_connections_reused_total";
+
+    private static final Map<String, String> HELP = new LinkedHashMap<String, String>();
+
+    static {
+        HELP.put(SCANS_SUBMITTED, "Scans launched, by controller and sensor pool");
+        HELP.put(SCANS_SUCCEEDED, "Scans for which cloudscan exited successfully, by controller and sensor pool");
+        HELP.put(SCANS_FAILED, "Scans for which cloudscan failed, by controller and sensor pool");
+        HELP.put(SCANS_SKIPPED, "Scans skipped as their inputs were unchanged or not affected by the SCM changes, by controller and sensor pool");
+        HELP.put(SCAN_DURATION, "Time taken by the build step to prepare and run cloudscan");
+        HELP.put(SUBMISSION_WAIT, "Time scans waited for a submission to be admitted, by controller and sensor pool");
+        HELP.put(RULEPACK_CACHE_HITS, "Remote rulepacks reused from the rulepack cache of a node");
+        HELP.put(RULEPACK_CACHE_MISSES, "Remote rulepacks downloaded");
+        HELP.put(RULEPACK_DOWNLOADED_BYTES, "Bytes of rulepacks downloaded");
+        HELP.put(RULEPACK_FAILURES, "Rulepacks that could not be resolved");
+        HELP.put(SSC_REQUEST_DURATION, "Latency of SOAP requests to Software Security Center, by operation");
+        HELP.put(SSC_REQUEST_ERRORS, "Failed SOAP requests to Software Security Center, by operation");
+        HELP.put(HTTP_CONNECTIONS_CREATED, "HTTP requests for which a new connection was opened, on the controller and agents");
+        HELP.put(HTTP_CONNECTIONS_REUSED, "HTTP requests sent over a pooled keep-alive connection, on the controller and agents");
+    }
+
+    private static final PluginMetrics INSTANCE = new PluginMetrics();
+
+    private final ConcurrentMap<String, Series<LongAdder>> counters = new ConcurrentHashMap<String, Series<LongAdder>>();
+    private final ConcurrentMap<String, Series<Histogram>> histograms = new ConcurrentHashMap<String, Series<Histogram>>();
+
+    private PluginMetrics() {}
+
+    /**
+     * Returns the metrics of this JVM.
+     */
+    public static PluginMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Increments a counter.
+     * @param name the name of the counter
+     * @param labels pairs of label names and values
+     */
+    public void increment(String name, String... labels) {
+        add(name, 1, labels);
+    }
+
+    /**
+     * Adds the specified amount to a counter.
+     * @param name the name of the counter
+     * @param amount the amount to add
+     * @param labels pairs of label names and values
+     */
+    public void add(String name, long amount, String... labels) {
+        final String key = Series.key(name, labels);
+        Series<LongAdder> series = counters.get(key);
+        if (series == null) {
+            final Series<LongAdder> created = new Series<LongAdder>(name, labels, new LongAdder());
+            series = counters.putIfAbsent(key, created);
+            if (series == null) {
+                series = created;
+            }
+        }
+        series.value.add(amount);
+    }
+
+    /**
+     * Records a latency in a histogram.
+     * @param name the name of the histogram
+     * @param millis the latency in milliseconds
+     * @param labels pairs of label names and values
+     */
+    public void record(String name, long millis, String... labels) {
+        final String key = Series.key(name, labels);
+        Series<Histogram> series = histograms.get(key);
+        if (series == null) {
+            final Series<Histogram> created = new Series<Histogram>(name, labels, new Histogram());
+            series = histograms.putIfAbsent(key, created);
+            if (series == null) {
+                series = created;
+            }
+        }
+        series.value.record(millis);
+    }
+
+    /**
+     * Adds the rulepack counts of a scan.
+     */
+    void record(RulepackStats stats) {
+        add(RULEPACK_CACHE_HITS, stats.getCacheHits());
+        add(RULEPACK_CACHE_MISSES, stats.getCacheMisses());
+        add(RULEPACK_DOWNLOADED_BYTES, stats.getDownloadedBytes());
+        add(RULEPACK_FAILURES, stats.getFailures());
+        add(HTTP_CONNECTIONS_CREATED, stats.getConnectionsCreated());
+        add(HTTP_CONNECTIONS_REUSED, stats.getConnectionsReused());
+    }
+
+    /**
+     * Counts an HTTP request sent by the controller.
+     * @param reused true if the request was sent over a pooled connection, false if a connection was opened for it
+     */
+    void recordConnection(boolean reused) {
+        increment(reused ? HTTP_CONNECTIONS_REUSED : HTTP_CONNECTIONS_CREATED);
+    }
+
+    /**
+     * Returns the current value of a counter, or 0 if it has not been incremented.
+     */
+    public long getCount(String name, String... labels) {
+        final Series<LongAdder> series = counters.get(Series.key(name, labels));
+        return (series != null) ? series.value.sum() : 0;
+    }
+
+    /**
+     * Returns the ratio of remote rulepacks that were reused from the cache, or 0 if none were resolved.
+     */
+    public double getRulepackCacheHitRatio() {
+        final long hits = getCount(RULEPACK_CACHE_HITS);
+        final long total = hits + getCount(RULEPACK_CACHE_MISSES);
+        return (total > 0) ? (double) hits / total : 0;
+    }
+
+    /**
+     * Renders all metrics as JSON.
+     */
+    public JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        final JSONObject counterJson = new JSONObject();
+        for (Series<LongAdder> series : sorted(counters)) {
+            final JSONObject value = new JSONObject();
+            value.put("labels", series.labels);
+            value.put("value", series.value.sum());
+            append(counterJson, series.name, value);
+        }
+        json.put("counters", counterJson);
+        final JSONObject histogramJson = new JSONObject();
+        for (Series<Histogram> series : sorted(histograms)) {
+            final JSONObject value = series.value.toJson();
+            value.put("labels", series.labels);
+            append(histogramJson, series.name, value);
+        }
+        json.put("histograms", histogramJson);
+        json.put("rulepackCacheHitRatio", getRulepackCacheHitRatio());
+        return json;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String toPrometheus() {
+        final StringBuilder sb = new StringBuilder();
+        String current = null;
+        for (Series<LongAdder> series : sorted(counters)) {
+            if (!series.name.equals(current)) {
+                current = series.name;
+                header(sb, current, "counter");
+            }
+            sb.append(series.name).append(series.format(null)).append(' ').append(series.value.sum()).append('\n');
+        }
+        header(sb, "fortify_cloudscan_rulepack_cache_hit_ratio", "gauge");
+        sb.append("fortify_cloudscan_rulepack_cache_hit_ratio ").append(getRulepackCacheHitRatio()).append('\n');
+        for (Series<Histogram> series : sorted(histograms)) {
+            if (!series.name.equals(current)) {
+                current = series.name;
+                header(sb, current, "histogram");
+            }
+            series.value.appendPrometheus(sb, series);
+        }
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type) {
+        final String help = HELP.get(name);
+        if (help != null) {
+            sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        } else if (name.endsWith("_ratio")) {
+            sb.append("# HELP ").append(name).append(" Ratio of remote rulepacks reused from the cache\n");
+        }
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void append(JSONObject json, String name, JSONObject value) {
+        JSONArray array = json.optJSONArray(name);
+        if (array == null) {
+            array = new JSONArray();
+        }
+        array.add(value);
+        json.put(name, array);
+    }
+
+    private static <T> List<Series<T>> sorted(ConcurrentMap<String, Series<T>> map) {
+        final List<Series<T>> list = new ArrayList<Series<T>>(map.values());
+        Collections.sort(list, new Comparator<Series<T>>() {
+            public int compare(Series<T> a, Series<T> b) {
+                return a.key.compareTo(b.key);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * A metric with a specific set of labels.
+     */
+    static final class Series<T> {
+
+        private final String name;
+        private final String key;
+        private final Map<String, String> labels;
+        private final T value;
+
+        Series(String name, String[] labels, T value) {
+            this.name = name;
+            this.key = key(name, labels);
+            this.labels = Collections.unmodifiableMap(toMap(labels));
+            this.value = value;
+        }
+
+        static String key(String name, String[] labels) {
+            if (labels.length == 0) {
+                return name;
+            }
+            final StringBuilder sb = new StringBuilder(name);
+            for (String label : labels) {
+                sb.append('\u0000').append(label);
+            }
+            return sb.toString();
+        }
+
+        private static Map<String, String> toMap(String[] labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be specified as name and value pairs");
+            }
+            final Map<String, String> map = new LinkedHashMap<String, String>();
+            for (int i = 0; i < labels.length; i += 2) {
+                map.put(labels[i], (labels[i + 1] != null) ? labels[i + 1] : "");
+            }
+            return map;
+        }
+
+        /**
+         * Formats the labels of the series, optionally followed by the <tt>le</tt> label of a histogram bucket.
+         */
+        String format(String le) {
+            if (labels.isEmpty() && le == null) {
+                return "";
+            }
+            final StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+            }
+            if (le != null) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append("le=\"").append(le).append('"');
+            }
+            return sb.append('}').toString();
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+
+    /**
+     * A latency histogram with power-of-two millisecond buckets from 1ms to about 2.3 hours.
+     */
+    static final class Histogram {
+
+        private static final int BUCKETS = 25;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder sum = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long millis) {
+            final long value = Math.max(0, millis);
+            // Bucket i holds values in (2^(i-1), 2^i], the last bucket holds everything larger
+            final int bucket = (value <= 1) ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value - 1));
+            buckets[bucket].increment();
+            sum.add(value);
+        }
+
+        private static String upperBound(int bucket) {
+            return (bucket == BUCKETS - 1) ? "+Inf" : String.valueOf((1L << bucket) / 1000.0);
+        }
+
+        JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            final JSONObject bucketJson = new JSONObject();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += buckets[i].sum();
+                bucketJson.put(upperBound(i), cumulative);
+            }
+            // The count is taken from the buckets so it is consistent with them while recording continues
+            json.put("count", cumulative);
+            json.put("sumMillis", sum.sum());
+            json.put("buckets", bucketJson);
+            return json;
+        }
+
+        void appendPrometheus(StringBuilder sb, Series<Histogram> series) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += buckets[i].sum();
+                sb.append(series.name).append("_bucket").append(series.format(upperBound(i)))
+                        .append(' ').append(cumulative).append('\n');
+            }
+            final String labels = series.format(null);
+            sb.append(series.name).append("_sum").append(labels).append(' ').append(sum.sum() / 1000.0).append('\n');
+            sb.append(series.name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+}
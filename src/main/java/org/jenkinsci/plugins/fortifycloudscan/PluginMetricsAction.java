@@ -0,0 +1,67 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Exposes the {@link PluginMetrics} at <tt>/fortify-cloudscan-metrics/</tt> as JSON and at
+ * <tt>/fortify-cloudscan-metrics/prometheus</tt> in the Prometheus text format. Metrics include
+ * the URLs of the configured servers, so they are only available to administrators.
+ */
+@Extension
+public class PluginMetricsAction implements RootAction {
+
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        final PrintWriter writer = rsp.getWriter();
+        writer.write(PluginMetrics.get().toJson().toString());
+        writer.flush();
+    }
+
+    public void doPrometheus(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        final PrintWriter writer = rsp.getWriter();
+        writer.write(PluginMetrics.get().toPrometheus());
+        writer.flush();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.PluginMetricsAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "fortify-cloudscan-metrics";
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of preparing a scan on the node it will run on, returned to the controller in a single response.
+ */
+public class PreparedScan implements Serializable {
+
+    private static final long serialVersionUID = -3650164781028329401L;
+
+    private final String command;
+    private final List<String> rulePaths;
+    private final String cliVersion;
+    private final String cliVersionError;
+    private final RulepackStats rulepackStats;
+    private SourceFingerprint fingerprint;
+    private String fingerprintError;
+
+    PreparedScan(String command, List<String> rulePaths, String cliVersion, String cliVersionError,
+                 RulepackStats rulepackStats) {
+        this.command = command;
+        this.rulePaths = new ArrayList<String>(rulePaths);
+        this.cliVersion = cliVersion;
+        this.cliVersionError = cliVersionError;
+        this.rulepackStats = rulepackStats;
+    }
+
+    /**
+     * Returns the shell command that executes cloudscan.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the paths of the rulepacks on the node, in the order they were specified.
+     */
+    public List<String> getRulePaths() {
+        return Collections.unmodifiableList(rulePaths);
+    }
+
+    /**
+     * Returns the output of <tt>cloudscan -version</tt>, or null if it could not be determined.
+     */
+    public String getCliVersion() {
+        return cliVersion;
+    }
+
+    /**
+     * Returns the reason the version of cloudscan could not be determined, or null.
+     */
+    public String getCliVersionError() {
+        return cliVersionError;
+    }
+
+    /**
+     * Returns the counts of the rulepacks resolved on the node.
+     */
+    public RulepackStats getRulepackStats() {
+        return rulepackStats;
+    }
+
+    /**
+     * Returns the fingerprint of the scan inputs, or null if the workspace was not fingerprinted.
+     */
+    public SourceFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the reason the workspace could not be fingerprinted, or null.
+     */
+    public String getFingerprintError() {
+        return fingerprintError;
+    }
+
+    void setFingerprint(SourceFingerprint fingerprint, String fingerprintError) {
+        this.fingerprint = fingerprint;
+        this.fingerprintError = fingerprintError;
+    }
+
+}
@@ -0,0 +1,446 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A persistent, per-node cache of remote rulepacks. Entries are indexed by the URL they were
+ * downloaded from and stored by the SHA-256 digest of the downloaded content, so the same rulepack
+ * served from several URLs is only extracted once. Each index entry records the ETag and
+ * Last-Modified validators returned by the server so that entries can be revalidated with a
+ * conditional request instead of being downloaded again.
+ *
+ * Eviction is only coordinated with the builds of the same JVM. Nodes must therefore not share the
+ * temporary directory (<tt>java.io.tmpdir</tt>) the cache is stored in with another agent JVM, as
+ * content in use by a build of one JVM could be evicted by the other.
+ */
+@SuppressFBWarnings(value = "RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
+public class RulepackCache {
+
+    private static final String INDEX_DIR = "index";
+    private static final String CONTENT_DIR = "content";
+    private static final String STAGING_DIR = "staging";
+    private static final String TRASH_DIR = "trash";
+
+    /**
+     * The name of the cache root within the plugin's temporary area
+     */
+    static final String CACHE_DIR = "cache";
+
+    /**
+     * Serializes eviction against builds on this node acquiring and storing cache entries.
+     * Builds share the read lock, the sweep takes the write lock only while moving an entry aside.
+     */
+    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_DIGEST = "digest";
+    private static final String KEY_FILENAME = "filename";
+
+    private final File indexDir;
+    private final File contentDir;
+    private final File stagingDir;
+
+    /**
+     * Constructs a new RulepackCache rooted at the specified directory.
+     * @param root the directory the cache is stored in
+     */
+    public RulepackCache(File root) {
+        this.indexDir = new File(root, INDEX_DIR);
+        this.contentDir = new File(root, CONTENT_DIR);
+        this.stagingDir = new File(root, STAGING_DIR);
+    }
+
+    /**
+     * Returns the cached entry for the specified URL.
+     * @param url the URL the rulepack was downloaded from
+     * @return the cached Entry, or null if the URL has not been cached or its content is no longer present
+     */
+    public Entry lookup(String url) {
+        final File indexFile = getIndexFile(url);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(indexFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!url.equals(properties.getProperty(KEY_URL)) || properties.getProperty(KEY_DIGEST) == null) {
+            return null;
+        }
+        final Entry entry = new Entry(url, properties.getProperty(KEY_ETAG), properties.getProperty(KEY_LAST_MODIFIED),
+                properties.getProperty(KEY_DIGEST), properties.getProperty(KEY_FILENAME));
+        if (!getContentDirectory(entry.getDigest()).isDirectory()) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the file or directory rulepacks should be loaded from for the specified entry.
+     * Archives resolve to the directory they were extracted to, individual rulepacks to the file itself.
+     * @param entry the cached entry
+     * @return the resolved rulepack location
+     */
+    public File resolve(Entry entry) {
+        final File directory = getContentDirectory(entry.getDigest());
+        if (entry.getFilename() == null) {
+            return directory;
+        }
+        return new File(directory, entry.getFilename());
+    }
+
+    /**
+     * Records that the specified entry is being used, which protects it from eviction for at least
+     * the minimum idle time used by {@link #sweep(File, long, long)}. Failing to record the use, for
+     * example in a cache owned by another user, does not prevent the entry from being used.
+     * @param entry the cached entry
+     * @return true if the entry is still present in the cache, false if it has been evicted
+     */
+    public boolean acquire(Entry entry) {
+        LOCK.readLock().lock();
+        try {
+            final File directory = getContentDirectory(entry.getDigest());
+            if (!directory.isDirectory()) {
+                return false;
+            }
+            directory.setLastModified(System.currentTimeMillis());
+            return true;
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a new, empty directory that downloaded content can be placed in before being stored.
+     * The staging directory lives on the same filesystem as the cache so it can be moved into place atomically.
+     * @return a new staging directory
+     * @throws IOException if the directory cannot be created
+     */
+    public File newStagingDirectory() throws IOException {
+        final File directory = new File(stagingDir, UUID.randomUUID().toString());
+        if (!directory.mkdirs()) {
+            throw new IOException("Unable to create staging directory " + directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    /**
+     * Moves the contents of a staging directory into the cache and indexes it under the specified URL.
+     * If content with the same digest has already been stored, the staging directory is discarded
+     * and the existing content is reused.
+     * @param url the URL the rulepack was downloaded from
+     * @param etag the ETag returned by the server, or null
+     * @param lastModified the Last-Modified date returned by the server, or null
+     * @param digest the SHA-256 digest of the downloaded content
+     * @param filename the name of the rulepack within the staging directory, or null if it was an extracted archive
+     * @param staging the staging directory containing the content
+     * @return the stored Entry
+     * @throws IOException if the content cannot be stored
+     */
+    public Entry store(String url, String etag, String lastModified, String digest, String filename, File staging)
+            throws IOException {
+        LOCK.readLock().lock();
+        try {
+            return doStore(url, etag, lastModified, digest, filename, staging);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    private Entry doStore(String url, String etag, String lastModified, String digest, String filename, File staging)
+            throws IOException {
+        final File target = getContentDirectory(digest);
+        if (target.isDirectory()) {
+            FileUtils.deleteQuietly(staging);
+        } else {
+            contentDir.mkdirs();
+            try {
+                Files.move(staging.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Another build on this node stored identical content first
+                FileUtils.deleteQuietly(staging);
+            } catch (IOException e) {
+                if (!target.isDirectory()) {
+                    throw e;
+                }
+                FileUtils.deleteQuietly(staging);
+            }
+        }
+
+        final Entry entry = new Entry(url, etag, lastModified, digest, getStoredFilename(target, filename));
+        final Properties properties = new Properties();
+        properties.setProperty(KEY_URL, url);
+        properties.setProperty(KEY_DIGEST, digest);
+        if (etag != null) {
+            properties.setProperty(KEY_ETAG, etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty(KEY_LAST_MODIFIED, lastModified);
+        }
+        if (entry.getFilename() != null) {
+            properties.setProperty(KEY_FILENAME, entry.getFilename());
+        }
+        indexDir.mkdirs();
+        final File indexFile = getIndexFile(url);
+        final File tempIndexFile = new File(indexDir, indexFile.getName() + "." + UUID.randomUUID() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempIndexFile)) {
+            properties.store(out, null);
+        }
+        Files.move(tempIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        target.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used content from the plugin's temporary area until it fits within
+     * the specified budget. Candidates are cached rulepacks as well as any other directories left in
+     * the area by previous versions of the plugin. Content used more recently than the minimum idle
+     * time is never evicted, since builds may still be passing it to the CloudScan client. Abandoned
+     * staging directories and index entries whose content is gone are removed as well.
+     * @param area the plugin's temporary area (the parent of the cache root)
+     * @param maxBytes the maximum number of bytes the area may occupy
+     * @param minIdleMillis the minimum time since last use before content may be evicted
+     * @return the number of bytes freed
+     */
+    public static long sweep(File area, long maxBytes, long minIdleMillis) {
+        final File root = new File(area, CACHE_DIR);
+        final RulepackCache cache = new RulepackCache(root);
+        final long now = System.currentTimeMillis();
+        final File trash = new File(root, TRASH_DIR);
+        long freed = 0;
+
+        for (File staging : listDirectories(cache.stagingDir)) {
+            if (now - staging.lastModified() > minIdleMillis) {
+                freed += delete(staging);
+            }
+        }
+
+        final List<Candidate> candidates = new ArrayList<Candidate>();
+        for (File directory : listDirectories(cache.contentDir)) {
+            candidates.add(new Candidate(directory));
+        }
+        for (File directory : listDirectories(area)) {
+            if (!directory.equals(root)) {
+                candidates.add(new Candidate(directory));
+            }
+        }
+        long total = 0;
+        for (Candidate candidate : candidates) {
+            total += candidate.size;
+        }
+        Collections.sort(candidates);
+
+        for (Candidate candidate : candidates) {
+            if (total <= maxBytes || now - candidate.lastUsed < minIdleMillis) {
+                break;
+            }
+            final File evicted = new File(trash, UUID.randomUUID().toString());
+            LOCK.writeLock().lock();
+            try {
+                // Skip content that was acquired after the candidates were collected
+                if (candidate.directory.lastModified() != candidate.lastUsed) {
+                    continue;
+                }
+                trash.mkdirs();
+                if (!candidate.directory.renameTo(evicted)) {
+                    continue;
+                }
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+            total -= candidate.size;
+            freed += delete(evicted);
+        }
+
+        for (File indexFile : listFiles(cache.indexDir)) {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(indexFile)) {
+                properties.load(in);
+            } catch (IOException e) {
+                continue;
+            }
+            final String digest = properties.getProperty(KEY_DIGEST);
+            if (digest != null && !cache.getContentDirectory(digest).exists()
+                    && now - indexFile.lastModified() > minIdleMillis) {
+                indexFile.delete();
+            }
+        }
+        return freed;
+    }
+
+    private static File[] listDirectories(File directory) {
+        final File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        return (files != null) ? files : new File[0];
+    }
+
+    private static File[] listFiles(File directory) {
+        final File[] files = directory.listFiles();
+        return (files != null) ? files : new File[0];
+    }
+
+    private static long delete(File directory) {
+        final long size = FileUtils.sizeOfDirectory(directory);
+        FileUtils.deleteQuietly(directory);
+        return size;
+    }
+
+    /**
+     * A directory that may be evicted, ordered from least to most recently used.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+
+        private final File directory;
+        private final long lastUsed;
+        private final long size;
+
+        Candidate(File directory) {
+            this.directory = directory;
+            this.lastUsed = directory.lastModified();
+            this.size = FileUtils.sizeOfDirectory(directory);
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Long.compare(lastUsed, other.lastUsed);
+        }
+    }
+
+    /**
+     * Identical content may already have been stored under a different filename by another URL.
+     * In that case the name of the file that is actually present is returned.
+     */
+    private String getStoredFilename(File target, String filename) {
+        if (filename == null || new File(target, filename).isFile()) {
+            return filename;
+        }
+        final String[] names = target.list();
+        return (names != null && names.length == 1) ? names[0] : filename;
+    }
+
+    /**
+     * Returns the digest of the content a location resolved from the cache was stored by, without reading it.
+     * @param location a location returned by {@link #resolve(Entry)}
+     * @return the SHA-256 digest of the downloaded rulepack, or null if the location is not in a rulepack cache
+     */
+    static String getContentDigest(File location) {
+        File directory = location.getAbsoluteFile();
+        if (!directory.isDirectory()) {
+            directory = directory.getParentFile();
+        }
+        final File content = (directory != null) ? directory.getParentFile() : null;
+        final File root = (content != null) ? content.getParentFile() : null;
+        if (root != null && CONTENT_DIR.equals(content.getName()) && CACHE_DIR.equals(root.getName())) {
+            return directory.getName();
+        }
+        return null;
+    }
+
+    private File getIndexFile(String url) {
+        return new File(indexDir, sha256(url) + ".properties");
+    }
+
+    private File getContentDirectory(String digest) {
+        return new File(contentDir, digest);
+    }
+
+    /**
+     * Returns a new SHA-256 MessageDigest.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        return Util.toHexString(newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * A single rulepack indexed by the URL it was downloaded from.
+     */
+    public static class Entry {
+
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String digest;
+        private final String filename;
+
+        Entry(String url, String etag, String lastModified, String digest, String filename) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.filename = filename;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+    }
+
+}
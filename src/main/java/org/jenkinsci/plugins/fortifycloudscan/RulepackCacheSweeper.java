@@ -0,0 +1,106 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically trims the temporary area used for rulepacks on every online node to the size
+ * configured in the global configuration. The sweep is sent to each node asynchronously and runs
+ * on the node itself, so it never delays a build.
+ */
+@Extension
+public class RulepackCacheSweeper extends AsyncPeriodicWork {
+
+    private static final String PROPERTY_PREFIX = RulepackCacheSweeper.class.getName() + ".";
+
+    /**
+     * How often the sweep is performed
+     */
+    private static final long RECURRENCE_PERIOD = TimeUnit.MINUTES.toMillis(
+            Long.getLong(PROPERTY_PREFIX + "recurrenceMinutes", 60));
+
+    /**
+     * Content used more recently than this is never evicted
+     */
+    private static final long MIN_IDLE = TimeUnit.MINUTES.toMillis(
+            Long.getLong(PROPERTY_PREFIX + "minIdleMinutes", 60));
+
+    public RulepackCacheSweeper() {
+        super("Fortify CloudScan rulepack cache sweeper");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+        final FortifyCloudScanBuilder.DescriptorImpl descriptor =
+                jenkins.getDescriptorByType(FortifyCloudScanBuilder.DescriptorImpl.class);
+        final long maxBytes = descriptor.getRulepackCacheSizeBytes();
+        for (Computer computer : jenkins.getComputers()) {
+            final VirtualChannel channel = computer.getChannel();
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.callAsync(new Sweep(maxBytes, MIN_IDLE));
+            } catch (IOException e) {
+                listener.getLogger().println("Unable to sweep rulepack cache on " + computer.getDisplayName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Performs the sweep on the node it is sent to.
+     */
+    private static class Sweep extends MasterToSlaveCallable<Long, IOException> {
+
+        private static final long serialVersionUID = -2263426377346880163L;
+
+        private final long maxBytes;
+        private final long minIdle;
+
+        Sweep(long maxBytes, long minIdle) {
+            this.maxBytes = maxBytes;
+            this.minIdle = minIdle;
+        }
+
+        public Long call() throws IOException {
+            final File area = new File(System.getProperty("java.io.tmpdir"), FortifyCloudScanPlugin.PLUGIN_NAME);
+            if (!area.isDirectory()) {
+                return 0L;
+            }
+            return RulepackCache.sweep(area, maxBytes, minIdle);
+        }
+    }
+
+}
@@ -16,50 +16,79 @@
 package org.jenkinsci.plugins.fortifycloudscan;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
 import org.jenkinsci.plugins.fortifycloudscan.util.ArchiveUtil;
+import org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.UUID;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 
 @SuppressFBWarnings(value = "RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
 public class RulepackResolver {
 
+    /**
+     * Specifies if archives are extracted as they are downloaded rather than saved to disk first
+     */
+    private static final boolean STREAMING_EXTRACTION = Boolean.parseBoolean(
+            System.getProperty(RulepackResolver.class.getName() + ".streamingExtraction", "true"));
+
     private transient ConsoleLogger logger;
+    private final RulepackStats stats;
     private String tempDir;
 
     public RulepackResolver(ConsoleLogger logger) {
+        this(logger, new RulepackStats());
+    }
+
+    /**
+     * Constructs a new RulepackResolver which counts the rulepacks it resolves.
+     * @param logger the logger to log to
+     * @param stats the counts to update
+     */
+    public RulepackResolver(ConsoleLogger logger, RulepackStats stats) {
         this.logger = logger;
+        this.stats = stats;
         tempDir = System.getProperty("java.io.tmpdir");
     }
 
+    /**
+     * Returns the counts of the rulepacks resolved so far.
+     */
+    public RulepackStats getStats() {
+        return stats;
+    }
+
     /**
      * Locally resolve a rulepack from the specified location. The location is a String representing
      * the path to the rulepack on the filesystem, or a remote URL. In the case of a URL, the rulepack
-     * will be downloaded to a temporary directory first.
+     * will be downloaded to the rulepack cache first, or reused from the cache if it has not changed.
      * @param location a filesystem or URL location
      * @return a File object containing the resolved file. Null if file is not resolved
      */
     public File resolve(String location) {
         try {
             final URL url = new URL(location);
-            final File download = download(url);
-            if (download != null) {
-                return extractArchive(download);
-            }
+            return download(url, true);
         } catch (MalformedURLException e) {
             final File file = new File(location);
             if (file.exists()) {
@@ -70,56 +99,134 @@ public class RulepackResolver {
     }
 
     /**
-     * Download a file from the specified URL and place into a temporary directory.
-     * Attempts to guess the filename from the HTTP response. If not successful, the
-     * filename will be derived from the URL.
+     * Download a file from the specified URL into the rulepack cache. If the URL has been cached
+     * previously, the cached copy is revalidated using a conditional request and reused when the
+     * server reports it has not been modified. Attempts to guess the filename from the HTTP response.
+     * If not successful, the filename will be derived from the URL. Archives are extracted before
+     * being stored in the cache.
      * @param url the URL to download the file from
-     * @return a File object where the downloaded file is saved
+     * @param revalidate true to revalidate a cached copy, false to always download the rulepack
+     * @return a File object where the downloaded (and optionally extracted) rulepack is located
      */
-    private File download(URL url) {
+    private File download(URL url, boolean revalidate) {
         final String urlString = url.toExternalForm();
-        final File temp = new File(tempDir + File.separator +
-                FortifyCloudScanPlugin.PLUGIN_NAME + File.separator + UUID.randomUUID());
+        final RulepackCache cache = new RulepackCache(new File(tempDir + File.separator +
+                FortifyCloudScanPlugin.PLUGIN_NAME + File.separator + RulepackCache.CACHE_DIR));
+        final RulepackCache.Entry cached = revalidate ? cache.lookup(urlString) : null;
 
-        final CloseableHttpClient httpclient = HttpClients.createDefault();
         final HttpGet httpGet = new HttpGet(urlString);
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                httpGet.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                httpGet.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
 
-        final CloseableHttpResponse response;
-        final File downloadedFile;
-        try {
-            logger.log("Downloading rulepack from " + urlString);
-            response = httpclient.execute(httpGet);
-            if (response.getStatusLine().getStatusCode() == 200) {
-                if (temp.mkdirs()) {
-                    logger.log("Created temporary rulepack download directory");
+        logger.log("Downloading rulepack from " + urlString);
+        final HttpClientContext context = HttpClientContext.create();
+        try (CloseableHttpResponse response = HttpTransport.getInstance().getClient().execute(httpGet, context)) {
+            stats.connection(HttpTransport.isConnectionReused(context));
+            final int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                EntityUtils.consume(response.getEntity());
+                if (!cache.acquire(cached)) {
+                    // The cached copy was evicted while it was being revalidated, download it once more
+                    return download(url, false);
                 }
-                final String suggestedFilename = getSuggestedFilename(response);
-                final String filename = (suggestedFilename != null) ? suggestedFilename : FilenameUtils.getName(urlString);
-                downloadedFile = new File(temp + File.separator + filename);
-            } else {
+                final File file = cache.resolve(cached);
+                logger.log("Rulepack has not been modified. Using cached copy at " + file.getAbsolutePath());
+                stats.cacheHit();
+                return file;
+            } else if (statusCode != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
                 logger.log("ERROR: Remote file cannot be downloaded");
                 logger.log("ERROR: Status Code: " + response.getStatusLine().getStatusCode() + " - " + response.getStatusLine().getReasonPhrase());
                 return null;
             }
+            return store(cache, urlString, response);
         } catch (IOException e) {
             logger.log("ERROR: An error occurred while attempting to download rulepack");
             logger.log(e.getMessage());
             return null;
         }
+    }
+
+    /**
+     * Saves the body of a successful response into a new staging directory, extracts it if it is
+     * an archive and stores the result in the rulepack cache.
+     * @param cache the rulepack cache to store the rulepack in
+     * @param urlString the URL the rulepack was downloaded from
+     * @param response the successful HTTP response
+     * @return the location of the cached rulepack, or null if it could not be saved
+     * @throws IOException if a staging directory cannot be created
+     */
+    private File store(RulepackCache cache, String urlString, HttpResponse response) throws IOException {
+        final File staging = cache.newStagingDirectory();
+        final String suggestedFilename = getSuggestedFilename(response);
+        final String filename = (suggestedFilename != null) ? suggestedFilename : FilenameUtils.getName(urlString);
+        final File downloadedFile = new File(staging, FilenameUtils.getName(filename));
+
         final HttpEntity entity = response.getEntity();
-        try(FileOutputStream outstream = new FileOutputStream(downloadedFile)) {
-            if (entity != null) {
-                entity.writeTo(outstream);
-                logger.log("Rulepack saved to " + downloadedFile.getAbsolutePath());
+        final MessageDigest digest = RulepackCache.newDigest();
+        final boolean archive = isArchive(downloadedFile);
+        long bytes = 0;
+        if (archive && STREAMING_EXTRACTION && entity != null) {
+            bytes = extractStream(entity, staging, digest);
+            if (bytes < 0) {
+                FileUtils.deleteQuietly(staging);
+                return null;
             }
-        } catch (FileNotFoundException e) {
-            logger.log("ERROR: The download file location cannot be found");
-            logger.log(e.getMessage());
+        } else {
+            try (CountingOutputStream outstream = new CountingOutputStream(
+                    new DigestOutputStream(new FileOutputStream(downloadedFile), digest))) {
+                if (entity != null) {
+                    entity.writeTo(outstream);
+                    logger.log("Rulepack saved to " + downloadedFile.getAbsolutePath());
+                }
+                bytes = outstream.getByteCount();
+            } catch (FileNotFoundException e) {
+                logger.log("ERROR: The download file location cannot be found");
+                logger.log(e.getMessage());
+                FileUtils.deleteQuietly(staging);
+                return null;
+            } catch (IOException e) {
+                logger.log("ERROR: An error occurred while saving the rulepack");
+                logger.log(e.getMessage());
+                FileUtils.deleteQuietly(staging);
+                return null;
+            }
+            if (archive && extractArchive(downloadedFile) == null) {
+                FileUtils.deleteQuietly(staging);
+                return null;
+            }
+        }
+        try {
+            final RulepackCache.Entry entry = cache.store(urlString, getHeaderValue(response, HttpHeaders.ETAG),
+                    getHeaderValue(response, HttpHeaders.LAST_MODIFIED), Util.toHexString(digest.digest()),
+                    archive ? null : downloadedFile.getName(), staging);
+            final File file = cache.resolve(entry);
+            logger.log("Rulepack cached at " + file.getAbsolutePath());
+            stats.cacheMiss(bytes);
+            return file;
         } catch (IOException e) {
-            logger.log("ERROR: An error occurred while saving the rulepack");
+            logger.log("ERROR: An error occurred while caching the rulepack");
             logger.log(e.getMessage());
+            FileUtils.deleteQuietly(staging);
+            return null;
         }
-        return downloadedFile;
+    }
+
+    /**
+     * Returns the value of the specified HTTP response header.
+     * @param response the HTTP response to parse
+     * @param name the name of the header
+     * @return the value of the header, or null if the header is not present
+     */
+    private String getHeaderValue(HttpResponse response, String name) {
+        final Header header = response.getFirstHeader(name);
+        return (header != null) ? header.getValue() : null;
     }
 
     /**
@@ -145,6 +252,26 @@ public class RulepackResolver {
         return null;
     }
 
+    /**
+     * Extracts a ZIP archive directly from the HTTP response body into the specified directory.
+     * The archive itself is never written to disk.
+     * @param entity the HTTP entity containing the archive
+     * @param directory the directory to extract the archive to
+     * @param digest the MessageDigest updated with the contents of the archive
+     * @return the number of bytes downloaded, or -1 if the archive could not be extracted
+     */
+    private long extractStream(HttpEntity entity, File directory, MessageDigest digest) {
+        logger.log("Extracting rulepack archive while downloading");
+        try (CountingInputStream instream = new CountingInputStream(entity.getContent())) {
+            ArchiveUtil.unzip(directory, instream, digest);
+            return instream.getByteCount();
+        } catch (IOException e) {
+            logger.log("ERROR: An error occurred while extracting the rulepack archive");
+            logger.log(e.getMessage());
+        }
+        return -1;
+    }
+
     /**
      * Determines if the specified file is a ZIP archive
      * @param file the file to check
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the rulepacks resolved by a single scan and the HTTP connections they were downloaded over.
+ * Rulepacks are resolved on the node the scan runs on, the counts are returned to the controller with
+ * the {@link PreparedScan} and added to the {@link PluginMetrics} there. Rulepacks are resolved
+ * concurrently, so counting is lock-free.
+ */
+public class RulepackStats implements Serializable {
+
+    private static final long serialVersionUID = 5712946378113580927L;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder downloadedBytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsReused = new LongAdder();
+
+    /**
+     * Records a remote rulepack that was reused from the cache after revalidation.
+     */
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Records a remote rulepack that was downloaded.
+     * @param bytes the number of bytes received
+     */
+    void cacheMiss(long bytes) {
+        cacheMisses.increment();
+        downloadedBytes.add(bytes);
+    }
+
+    /**
+     * Records a rulepack that could not be resolved.
+     */
+    void failure() {
+        failures.increment();
+    }
+
+    /**
+     * Records a request for a remote rulepack that was answered.
+     * @param reused true if the request was sent over a pooled connection, false if a connection was opened for it
+     */
+    void connection(boolean reused) {
+        (reused ? connectionsReused : connectionsCreated).increment();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    public long getConnectionsReused() {
+        return connectionsReused.sum();
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.jvnet.localizer.Localizable;
+
+/**
+ * The phases a CloudScan job passes through, in the order they occur. The time spent in a phase
+ * is the time from its start until the start of the next phase that was observed.
+ */
+public enum ScanPhase {
+
+    /**
+     * The command is prepared and rulepacks are resolved on the node
+     */
+    PREPARE(Messages._ScanPhase_PREPARE()),
+
+    /**
+     * cloudscan packages the translated build and uploads it to the controller
+     */
+    UPLOAD(Messages._ScanPhase_UPLOAD()),
+
+    /**
+     * The job waits in the controller queue for a sensor
+     */
+    QUEUED(Messages._ScanPhase_QUEUED()),
+
+    /**
+     * A sensor performs the scan (and the results are uploaded to SSC, if requested)
+     */
+    SCAN(Messages._ScanPhase_SCAN()),
+
+    /**
+     * The job has finished, successfully or not
+     */
+    FINISHED(Messages._ScanPhase_FINISHED());
+
+    private final Localizable displayName;
+
+    ScanPhase(Localizable displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName.toString();
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller-wide index of the results of successful scans, keyed by the SCM revision that was scanned,
+ * the rulepacks and the scan options. Jobs that scan the same revision with the same settings (a branch
+ * build, its pull request and a release build, for example) can refer to the results of the first scan
+ * instead of submitting the same job again.
+ *
+ * Only completed scans are indexed: scans whose FPR was retrieved, or whose job was seen completing by
+ * <tt>waitForCloudScan</tt>. The results of jobs that were only submitted are kept pending, in memory, until
+ * their final state is known.
+ *
+ * Entries expire after a TTL and the least recently used entries are evicted once the index holds the
+ * configured maximum number of entries. The index is persisted in <tt>JENKINS_HOME</tt> so it survives
+ * restarts.
+ */
+public final class ScanResultIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ScanResultIndex.class.getName());
+
+    private static ScanResultIndex instance;
+
+    private final XmlFile file;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * The results of jobs that were submitted but not seen completing yet, by job token
+     */
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<String, Entry>();
+
+    private ScanResultIndex(XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the index of this controller, loading it the first time it is requested.
+     */
+    public static synchronized ScanResultIndex get() {
+        if (instance == null) {
+            instance = new ScanResultIndex(new XmlFile(Jenkins.XSTREAM2,
+                    new File(Jenkins.getInstance().getRootDir(), ScanResultIndex.class.getName() + ".xml")));
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the key of a scan.
+     * @param revision the SCM revision that is scanned
+     * @param rules the rulepacks, as configured
+     * @param options the settings that determine the results of the scan
+     * @return the hex encoded SHA-256 digest of the revision, rulepacks and options
+     */
+    static String key(String revision, List<String> rules, List<String> options) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(revision.getBytes(StandardCharsets.UTF_8));
+        update(digest, rules);
+        update(digest, options);
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, List<String> values) {
+        digest.update((byte) 1);
+        for (String value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Returns the result recorded for the specified key, or null if there is none or it has expired.
+     * @param key the key of the scan
+     * @param ttlMillis the time after which results are no longer reused
+     */
+    public synchronized Entry lookup(String key, long ttlMillis) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(ttlMillis)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Records the result of a scan, evicting expired entries and, if the index is full, the least
+     * recently used entries.
+     * @param entry the result of the scan
+     * @param ttlMillis the time after which results are no longer reused
+     * @param maxEntries the maximum number of entries kept
+     */
+    public synchronized void record(Entry entry, long ttlMillis, int maxEntries) {
+        entries.put(entry.getKey(), entry);
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry candidate = iterator.next();
+            if (entries.size() > maxEntries || candidate.isExpired(ttlMillis)) {
+                iterator.remove();
+            }
+        }
+        save();
+    }
+
+    /**
+     * Keeps the result of a submitted job until its final state is known.
+     * @param entry the result of the scan, with the token of its job
+     * @param maxEntries the maximum number of pending results kept
+     */
+    public synchronized void recordPending(Entry entry, int maxEntries) {
+        pending.put(entry.getJobToken(), entry);
+        final Iterator<Entry> iterator = pending.values().iterator();
+        while (pending.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Indexes the pending result of a job once it has completed.
+     * @param jobToken the token of the job
+     * @param ttlMillis the time after which results are no longer reused
+     * @param maxEntries the maximum number of entries kept
+     */
+    public synchronized void complete(String jobToken, long ttlMillis, int maxEntries) {
+        final Entry entry = pending.remove(jobToken);
+        if (entry != null && !entry.isExpired(ttlMillis)) {
+            record(entry, ttlMillis, maxEntries);
+        }
+    }
+
+    /**
+     * Drops the pending result of a job that failed or was canceled.
+     * @param jobToken the token of the job
+     */
+    public synchronized void discard(String jobToken) {
+        pending.remove(jobToken);
+    }
+
+    /**
+     * Returns the number of results in the index, including expired results not evicted yet.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all results from the index.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        save();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            // Stored least recently used first, so the access order is restored
+            for (Entry entry : (List<Entry>) file.read()) {
+                entries.put(entry.getKey(), entry);
+            }
+        } catch (IOException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Unable to load the CloudScan result index from " + file, e);
+        }
+    }
+
+    private void save() {
+        try {
+            file.write(new ArrayList<Entry>(entries.values()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save the CloudScan result index to " + file, e);
+        }
+    }
+
+    /**
+     * The result of a scan.
+     */
+    public static final class Entry {
+
+        private final String key;
+        private final String revision;
+        private final String build;
+        private final String jobToken;
+        private final String controllerUrl;
+        private final boolean upload;
+        private final String versionId;
+        private final String fprName;
+        private final FprSummary summary;
+        private final long started;
+        private final long recorded;
+
+        /**
+         * Constructs a new Entry.
+         * @param key the key of the scan
+         * @param revision the SCM revision that was scanned
+         * @param build the externalizable id of the build that performed the scan
+         * @param jobToken the token of the CloudScan job, or null
+         * @param controllerUrl the URL to the controller, or null if it has to be retrieved from SSC
+         * @param upload true if the results were uploaded to SSC
+         * @param versionId the SSC project version the results were uploaded to, or null
+         * @param fprName the name of the retrieved FPR, or null
+         * @param summary the summary of the retrieved FPR, or null
+         * @param started the time the scan started, in milliseconds
+         */
+        public Entry(String key, String revision, String build, String jobToken, String controllerUrl, boolean upload,
+                     String versionId, String fprName, FprSummary summary, long started) {
+            this.key = key;
+            this.revision = revision;
+            this.build = build;
+            this.jobToken = jobToken;
+            this.controllerUrl = controllerUrl;
+            this.upload = upload;
+            this.versionId = versionId;
+            this.fprName = fprName;
+            this.summary = summary;
+            this.started = started;
+            this.recorded = System.currentTimeMillis();
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        /**
+         * Returns the externalizable id of the build that performed the scan.
+         */
+        public String getBuild() {
+            return build;
+        }
+
+        public String getJobToken() {
+            return jobToken;
+        }
+
+        public String getControllerUrl() {
+            return controllerUrl;
+        }
+
+        public boolean isUpload() {
+            return upload;
+        }
+
+        public String getVersionId() {
+            return versionId;
+        }
+
+        public String getFprName() {
+            return fprName;
+        }
+
+        public FprSummary getSummary() {
+            return summary;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getRecorded() {
+            return recorded;
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - recorded > ttlMillis;
+        }
+    }
+
+}
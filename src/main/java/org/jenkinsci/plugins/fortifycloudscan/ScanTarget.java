@@ -0,0 +1,127 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import java.io.Serializable;
+
+/**
+ * A single module scanned by {@link FortifyCloudScanParallelBuilder}. Only the settings that differ
+ * between modules are defined here; blank settings are inherited from the shared scan settings.
+ */
+public class ScanTarget extends AbstractDescribableImpl<ScanTarget> implements Serializable {
+
+    private static final long serialVersionUID = 6127064926371829537L;
+
+    private final String buildId;
+    private String buildLabel;
+    private String buildProject;
+    private String buildVersion;
+    private String sensorPool;
+    private String versionId;
+    private String upToken;
+
+    @DataBoundConstructor
+    public ScanTarget(String buildId) {
+        this.buildId = buildId;
+    }
+
+    /**
+     * Retrieves the build id. This value is required and also labels the output of the target.
+     */
+    public String getBuildId() {
+        return buildId;
+    }
+
+    public String getBuildLabel() {
+        return buildLabel;
+    }
+
+    @DataBoundSetter
+    public void setBuildLabel(String buildLabel) {
+        this.buildLabel = buildLabel;
+    }
+
+    public String getBuildProject() {
+        return buildProject;
+    }
+
+    @DataBoundSetter
+    public void setBuildProject(String buildProject) {
+        this.buildProject = buildProject;
+    }
+
+    public String getBuildVersion() {
+        return buildVersion;
+    }
+
+    @DataBoundSetter
+    public void setBuildVersion(String buildVersion) {
+        this.buildVersion = buildVersion;
+    }
+
+    public String getSensorPool() {
+        return sensorPool;
+    }
+
+    @DataBoundSetter
+    public void setSensorPool(String sensorPool) {
+        this.sensorPool = sensorPool;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    @DataBoundSetter
+    public void setVersionId(String versionId) {
+        this.versionId = versionId;
+    }
+
+    public String getUpToken() {
+        return upToken;
+    }
+
+    @DataBoundSetter
+    public void setUpToken(String upToken) {
+        this.upToken = upToken;
+    }
+
+    @Extension @Symbol("scanTarget")
+    public static class DescriptorImpl extends Descriptor<ScanTarget> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.ScanTarget_DisplayName();
+        }
+
+        public FormValidation doCheckBuildId(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error(Messages.ScanTarget_buildIdRequired());
+            }
+            return FormValidation.ok();
+        }
+    }
+
+}
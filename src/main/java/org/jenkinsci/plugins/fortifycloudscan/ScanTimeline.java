@@ -0,0 +1,184 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Util;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The times a single CloudScan job entered each of its phases. Phases only ever advance: a phase
+ * is ignored once the same or a later phase has been reached, so status lines that are printed
+ * repeatedly (or out of order) do not move the timeline back. Phases that were never observed
+ * are skipped, their time is attributed to the previous phase.
+ */
+public class ScanTimeline {
+
+    private final String label;
+    private final Map<ScanPhase, Long> starts = new EnumMap<ScanPhase, Long>(ScanPhase.class);
+    private String token;
+
+    /**
+     * Constructs a new ScanTimeline.
+     * @param label the label of the scan (the build id for scans of multiple targets), or null
+     */
+    public ScanTimeline(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the token of the job, or null if no job was submitted.
+     */
+    public synchronized String getToken() {
+        return token;
+    }
+
+    public synchronized void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Records that the job entered the specified phase now.
+     * @return true if the phase was recorded, false if the same or a later phase was already reached
+     */
+    public boolean enter(ScanPhase phase) {
+        return enter(phase, System.currentTimeMillis());
+    }
+
+    /**
+     * Records that the job entered the specified phase at the specified time.
+     * @return true if the phase was recorded, false if the same or a later phase was already reached
+     */
+    public synchronized boolean enter(ScanPhase phase, long time) {
+        final ScanPhase current = getPhase();
+        if (current != null && current.compareTo(phase) >= 0) {
+            return false;
+        }
+        starts.put(phase, time);
+        return true;
+    }
+
+    /**
+     * Returns the last phase the job entered, or null if none was recorded.
+     */
+    public synchronized ScanPhase getPhase() {
+        ScanPhase current = null;
+        for (ScanPhase phase : starts.keySet()) {
+            current = phase;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the time the job entered the specified phase, or -1 if it was not observed.
+     */
+    public synchronized long getStart(ScanPhase phase) {
+        final Long start = starts.get(phase);
+        return (start != null) ? start : -1;
+    }
+
+    /**
+     * Returns the time spent in the specified phase in milliseconds, or -1 if the phase was not
+     * observed or is still in progress as far as this build knows.
+     */
+    public synchronized long getDuration(ScanPhase phase) {
+        final Long start = starts.get(phase);
+        if (start == null) {
+            return -1;
+        }
+        for (Map.Entry<ScanPhase, Long> entry : starts.entrySet()) {
+            if (entry.getKey().compareTo(phase) > 0) {
+                return Math.max(0, entry.getValue() - start);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the observed phases (other than {@link ScanPhase#FINISHED}) positioned relative to the
+     * whole timeline, for rendering.
+     */
+    public synchronized List<Span> getSpans() {
+        final List<Span> spans = new ArrayList<Span>();
+        if (starts.isEmpty()) {
+            return spans;
+        }
+        final long first = starts.values().iterator().next();
+        long last = first;
+        for (Long start : starts.values()) {
+            last = start;
+        }
+        final long total = Math.max(1, last - first);
+        for (Map.Entry<ScanPhase, Long> entry : starts.entrySet()) {
+            if (entry.getKey() != ScanPhase.FINISHED) {
+                spans.add(new Span(entry.getKey(), entry.getValue() - first, getDuration(entry.getKey()), total));
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * A phase of the timeline. Offsets and widths are percentages of the whole timeline. A phase that is
+     * still in progress extends to the end of the timeline.
+     */
+    public static final class Span {
+
+        private final ScanPhase phase;
+        private final long offset;
+        private final long duration;
+        private final long total;
+
+        Span(ScanPhase phase, long offset, long duration, long total) {
+            this.phase = phase;
+            this.offset = offset;
+            this.duration = duration;
+            this.total = total;
+        }
+
+        public ScanPhase getPhase() {
+            return phase;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public boolean isInProgress() {
+            return duration < 0;
+        }
+
+        public String getDurationString() {
+            return isInProgress() ? "" : Util.getTimeSpanString(duration);
+        }
+
+        public long getOffsetPercent() {
+            return offset * 100 / total;
+        }
+
+        public long getWidthPercent() {
+            final long width = isInProgress() ? 100 - getOffsetPercent() : duration * 100 / total;
+            // Keep short phases visible
+            return Math.max(1, width);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records when the CloudScan jobs of a build entered each phase, so that the time spent preparing
+ * rulepacks, uploading, waiting in the controller queue and scanning can be told apart. A build
+ * has a single action holding the timelines of all jobs it submitted.
+ */
+public class ScanTimelineAction implements RunAction2 {
+
+    private final List<ScanTimeline> timelines = new ArrayList<ScanTimeline>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Returns the action of the specified build, adding it if the build does not have one yet.
+     */
+    static ScanTimelineAction of(Run<?, ?> build) {
+        synchronized (build) {
+            ScanTimelineAction action = build.getAction(ScanTimelineAction.class);
+            if (action == null) {
+                action = new ScanTimelineAction();
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Adds the timeline of a job submitted by the build.
+     */
+    public synchronized void add(ScanTimeline timeline) {
+        timelines.add(timeline);
+    }
+
+    public synchronized List<ScanTimeline> getTimelines() {
+        return Collections.unmodifiableList(new ArrayList<ScanTimeline>(timelines));
+    }
+
+    /**
+     * Returns the timeline of the job with the specified token, or null if the build did not submit it.
+     */
+    public synchronized ScanTimeline getTimeline(String token) {
+        for (ScanTimeline timeline : timelines) {
+            if (token.equals(timeline.getToken())) {
+                return timeline;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the total time the jobs of the build spent in the specified phase in milliseconds.
+     * Phases that are still in progress are not included.
+     */
+    public synchronized long getDuration(ScanPhase phase) {
+        long duration = 0;
+        for (ScanTimeline timeline : timelines) {
+            duration += Math.max(0, timeline.getDuration(phase));
+        }
+        return duration;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.ScanTimelineAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "cloudScanTimeline";
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.util.ChartUtil;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+import jenkins.model.TransientActionFactory;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.CategoryDataset;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Shows the time the CloudScan jobs of recent builds spent in each phase, stacked per build. A growing
+ * controller queue phase with a constant scan phase indicates that there are not enough sensors.
+ */
+public class ScanTrendAction implements Action {
+
+    /**
+     * The maximum number of builds shown in the graph
+     */
+    static final int MAX_BUILDS = Integer.getInteger(ScanTrendAction.class.getName() + ".maxBuilds", 30);
+
+    private final Job<?, ?> job;
+
+    public ScanTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * Renders the trend graph.
+     */
+    public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final Run<?, ?> lastBuild = job.getLastBuild();
+        final long timestamp = (lastBuild != null) ? lastBuild.getTimestamp().getTimeInMillis() : 0;
+        new Graph(timestamp, 500, 200) {
+            @Override
+            protected JFreeChart createGraph() {
+                return createChart(buildDataset());
+            }
+        }.doPng(req, rsp);
+    }
+
+    private CategoryDataset buildDataset() {
+        final DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dataset =
+                new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
+        int count = 0;
+        for (Run<?, ?> run = job.getLastCompletedBuild(); run != null && count < MAX_BUILDS; run = run.getPreviousCompletedBuild()) {
+            final ScanTimelineAction action = run.getAction(ScanTimelineAction.class);
+            if (action == null) {
+                continue;
+            }
+            final ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(run);
+            for (ScanPhase phase : ScanPhase.values()) {
+                if (phase != ScanPhase.FINISHED) {
+                    // Minutes, as scans rarely take less than one
+                    dataset.add(action.getDuration(phase) / 60000.0, phase.getDisplayName(), label);
+                }
+            }
+            count++;
+        }
+        return dataset.build();
+    }
+
+    private static JFreeChart createChart(CategoryDataset dataset) {
+        final JFreeChart chart = ChartFactory.createStackedAreaChart(null, null, "min", dataset,
+                PlotOrientation.VERTICAL, true, true, false);
+        chart.setBackgroundPaint(Color.white);
+        final CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setOutlinePaint(null);
+        plot.setForegroundAlpha(0.8f);
+        plot.setRangeGridlinesVisible(true);
+        plot.setRangeGridlinePaint(Color.black);
+        final CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+        plot.setDomainAxis(domainAxis);
+        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+        domainAxis.setLowerMargin(0.0);
+        domainAxis.setUpperMargin(0.0);
+        domainAxis.setCategoryMargin(0.0);
+        return chart;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.ScanTrendAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "cloudScanTrend";
+    }
+
+    /**
+     * Adds the trend to jobs whose last completed build submitted a CloudScan job.
+     */
+    @Extension
+    public static class Factory extends TransientActionFactory<Job> {
+
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Action> createFor(@Nonnull Job target) {
+            final Run<?, ?> lastBuild = target.getLastCompletedBuild();
+            if (lastBuild == null || lastBuild.getAction(ScanTimelineAction.class) == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singleton(new ScanTrendAction(target));
+        }
+    }
+
+}
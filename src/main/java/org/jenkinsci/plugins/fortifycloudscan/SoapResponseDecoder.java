@@ -0,0 +1,176 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlException;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes SOAP responses in a single pass. The response is read with StAX up to the first child of
+ * the SOAP Body, which is then loaded directly into the requested XMLBeans type, or handed to a
+ * {@link BodyReader} for responses too large to load. No SAAJ or DOM tree of the response is ever built.
+ */
+final class SoapResponseDecoder {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final ConcurrentMap<Class<?>, SchemaType> SCHEMA_TYPES = new ConcurrentHashMap<Class<?>, SchemaType>();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private SoapResponseDecoder() {}
+
+    /**
+     * Returns the SchemaType of the specified XMLBeans class. The type is obtained through reflection
+     * the first time a class is requested and is cached afterwards.
+     */
+    static SchemaType getSchemaType(Class<?> clazz) throws NoSuchFieldException, IllegalAccessException {
+        SchemaType schemaType = SCHEMA_TYPES.get(clazz);
+        if (schemaType == null) {
+            final Field typeField = clazz.getDeclaredField("type");
+            schemaType = (SchemaType) typeField.get(null);
+            SCHEMA_TYPES.putIfAbsent(clazz, schemaType);
+        }
+        return schemaType;
+    }
+
+    /**
+     * Reads the contents of a SOAP Body while the response is being received.
+     * @param <T> the type of the value read from the body
+     */
+    interface BodyReader<T> {
+
+        /**
+         * Reads the body. The reader is positioned at the start of the first child element of the SOAP Body.
+         * @param reader the reader of the response
+         * @return the value read from the body
+         */
+        T read(XMLStreamReader reader) throws XMLStreamException, XmlException;
+    }
+
+    /**
+     * Decodes the SOAP envelope read from the specified stream.
+     * @param input the stream containing the SOAP envelope. The stream is not closed.
+     * @param clazz the XmlObject class (in XMLBeans) the body is parsed as
+     * @return the contents of the SOAP Body as the specified XmlObject implementation
+     * @throws FortifySscClientException if the response is a SOAP fault
+     * @throws XmlException if the response is not a SOAP envelope or cannot be parsed as the specified type
+     */
+    static <T> T decode(InputStream input, final Class<T> clazz)
+            throws XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
+
+        final SchemaType schemaType = getSchemaType(clazz);
+        return decode(input, new BodyReader<T>() {
+            public T read(XMLStreamReader reader) throws XmlException {
+                return clazz.cast(XmlBeans.getContextTypeLoader().parse(reader, schemaType, null));
+            }
+        });
+    }
+
+    /**
+     * Decodes the SOAP envelope read from the specified stream with the specified reader, so that
+     * large responses can be processed without ever holding their contents in memory.
+     * @param input the stream containing the SOAP envelope. The stream is not closed.
+     * @param bodyReader reads the contents of the SOAP Body
+     * @return the value returned by the body reader
+     * @throws FortifySscClientException if the response is a SOAP fault
+     * @throws XmlException if the response is not a SOAP envelope or cannot be read
+     */
+    static <T> T decode(InputStream input, BodyReader<T> bodyReader) throws XmlException, FortifySscClientException {
+        try {
+            final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+            if (!advanceTo(reader, "Body") || !nextChildElement(reader)) {
+                throw new XmlException("The response from SSC does not contain a SOAP body");
+            }
+            if (isSoapEnvelopeElement(reader, "Fault")) {
+                throw new FortifySscClientException(readFaultString(reader));
+            }
+            final T result = bodyReader.read(reader);
+            reader.close();
+            return result;
+        } catch (XMLStreamException e) {
+            throw new XmlException("Unable to read the response from SSC", e);
+        }
+    }
+
+    /**
+     * Advances the reader to the start of the next element in the SOAP envelope namespace with the specified local name.
+     */
+    private static boolean advanceTo(XMLStreamReader reader, String localName) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && isSoapEnvelopeElement(reader, localName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advances the reader to the first child element of the current element.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSoapEnvelopeElement(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName())
+                && (SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE.equals(reader.getNamespaceURI())
+                || SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE.equals(reader.getNamespaceURI()));
+    }
+
+    /**
+     * Reads the fault string (SOAP 1.1) or reason text (SOAP 1.2) of the current Fault element.
+     */
+    private static String readFaultString(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("faultstring".equals(reader.getLocalName()) || "Text".equals(reader.getLocalName())) {
+                    return reader.getElementText();
+                }
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        return "SSC returned a SOAP fault";
+    }
+
+}
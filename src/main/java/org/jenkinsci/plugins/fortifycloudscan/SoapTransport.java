@@ -0,0 +1,182 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.xmlbeans.XmlException;
+import org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Sends SOAP envelopes to SSC over the pooled, keep-alive client provided by {@link HttpTransport}.
+ * The SAAJ MessageFactory is looked up once and reused, and SOAPConnection is not used at all, so a
+ * call costs a single HTTP exchange on a (usually) already open connection. Compressed responses are
+ * requested and transparently decoded by the HTTP client.
+ */
+public final class SoapTransport {
+
+    private static final String SOAP_CONTENT_TYPE = "text/xml; charset=utf-8";
+
+    private final CloseableHttpClient client;
+    private final MessageFactory messageFactory;
+
+    /**
+     * Constructs a new SoapTransport that sends requests using the specified client.
+     * Used to point the transport at a stand-in endpoint; everything else should use {@link #getInstance()}.
+     * @param client the HTTP client to send requests with
+     */
+    SoapTransport(CloseableHttpClient client) throws SOAPException {
+        this.client = client;
+        this.messageFactory = MessageFactory.newInstance();
+    }
+
+    /**
+     * Returns the transport shared by this JVM.
+     */
+    public static SoapTransport getInstance() throws SOAPException {
+        return Holder.get();
+    }
+
+    /**
+     * Creates a new, empty SOAP message using the cached MessageFactory.
+     */
+    public SOAPMessage createMessage() throws SOAPException {
+        return messageFactory.createMessage();
+    }
+
+    /**
+     * Posts the SOAP message to the specified endpoint and returns the response. SOAP faults
+     * (returned by SSC with HTTP status 500) are returned as a message so they can be reported.
+     * @param soapMessage The SOAP message to send to the endpoint
+     * @param endpointUrl The URL to the SOAP endpoint
+     * @return a SOAPMessage as a response
+     * @throws SOAPException if the response is not a SOAP message
+     * @throws IOException if the endpoint cannot be reached or returns an unexpected HTTP status
+     */
+    public SOAPMessage call(SOAPMessage soapMessage, URL endpointUrl) throws SOAPException, IOException {
+        try (CloseableHttpResponse response = execute(soapMessage, endpointUrl)) {
+            final HttpEntity entity = response.getEntity();
+            // Only the content type is relevant to SAAJ, the content has already been decompressed
+            final MimeHeaders mimeHeaders = new MimeHeaders();
+            final Header contentType = entity.getContentType();
+            mimeHeaders.addHeader("Content-Type", (contentType != null) ? contentType.getValue() : SOAP_CONTENT_TYPE);
+            final byte[] content = EntityUtils.toByteArray(entity);
+            return messageFactory.createMessage(mimeHeaders, new ByteArrayInputStream(content));
+        }
+    }
+
+    /**
+     * Posts the SOAP message to the specified endpoint and decodes the body of the response as
+     * the specified XMLBeans type while it is being received. See {@link SoapResponseDecoder}.
+     * @param soapMessage The SOAP message to send to the endpoint
+     * @param endpointUrl The URL to the SOAP endpoint
+     * @param clazz The XmlObject class (in XMLBeans) for parsing and casting
+     * @return the body of the response as the specified XmlObject implementation
+     * @throws FortifySscClientException if SSC returned a SOAP fault
+     */
+    public <T> T call(SOAPMessage soapMessage, URL endpointUrl, Class<T> clazz) throws SOAPException, IOException,
+            XmlException, NoSuchFieldException, IllegalAccessException, FortifySscClientException {
+
+        try (CloseableHttpResponse response = execute(soapMessage, endpointUrl);
+             InputStream content = response.getEntity().getContent()) {
+            return SoapResponseDecoder.decode(content, clazz);
+        }
+    }
+
+    /**
+     * Posts the SOAP message to the specified endpoint and reads the body of the response with
+     * the specified reader while it is being received.
+     * @param soapMessage The SOAP message to send to the endpoint
+     * @param endpointUrl The URL to the SOAP endpoint
+     * @param bodyReader reads the contents of the SOAP Body
+     * @return the value returned by the body reader
+     * @throws FortifySscClientException if SSC returned a SOAP fault
+     */
+    <T> T call(SOAPMessage soapMessage, URL endpointUrl, SoapResponseDecoder.BodyReader<T> bodyReader)
+            throws SOAPException, IOException, XmlException, FortifySscClientException {
+
+        try (CloseableHttpResponse response = execute(soapMessage, endpointUrl);
+             InputStream content = response.getEntity().getContent()) {
+            return SoapResponseDecoder.decode(content, bodyReader);
+        }
+    }
+
+    /**
+     * Posts the SOAP message and returns the response once its status has been checked.
+     * The caller is responsible for closing the response.
+     */
+    private CloseableHttpResponse execute(SOAPMessage soapMessage, URL endpointUrl) throws SOAPException, IOException {
+        if (soapMessage.saveRequired()) {
+            soapMessage.saveChanges();
+        }
+        final ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        soapMessage.writeTo(envelope);
+
+        final HttpPost post;
+        try {
+            post = new HttpPost(endpointUrl.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid SSC endpoint: " + endpointUrl, e);
+        }
+        post.setHeader("SOAPAction", "\"\"");
+        post.setEntity(new ByteArrayEntity(envelope.toByteArray(), ContentType.parse(SOAP_CONTENT_TYPE)));
+
+        final HttpClientContext context = HttpClientContext.create();
+        final CloseableHttpResponse response = client.execute(post, context);
+        PluginMetrics.get().recordConnection(HttpTransport.isConnectionReused(context));
+        final int status = response.getStatusLine().getStatusCode();
+        final HttpEntity entity = response.getEntity();
+        if (entity == null || (status != HttpStatus.SC_OK && status != HttpStatus.SC_INTERNAL_SERVER_ERROR)) {
+            try {
+                EntityUtils.consume(entity);
+            } finally {
+                response.close();
+            }
+            throw new IOException("SSC returned HTTP status " + status + " " + response.getStatusLine().getReasonPhrase());
+        }
+        return response;
+    }
+
+    private static class Holder {
+        private static SoapTransport instance;
+
+        private static synchronized SoapTransport get() throws SOAPException {
+            if (instance == null) {
+                instance = new SoapTransport(HttpTransport.getInstance().getClient());
+            }
+            return instance;
+        }
+    }
+
+}
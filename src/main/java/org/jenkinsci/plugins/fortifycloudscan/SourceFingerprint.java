@@ -0,0 +1,77 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.io.Serializable;
+
+/**
+ * The fingerprint of the inputs of a scan, computed on the node the scan is prepared on. Two scans with
+ * the same fingerprint scan identical sources with identical settings.
+ */
+public class SourceFingerprint implements Serializable {
+
+    private static final long serialVersionUID = 2870371965127104319L;
+
+    private final String digest;
+    private final int files;
+    private final int hashedFiles;
+    private final long hashedBytes;
+    private final long duration;
+
+    SourceFingerprint(String digest, int files, int hashedFiles, long hashedBytes, long duration) {
+        this.digest = digest;
+        this.files = files;
+        this.hashedFiles = hashedFiles;
+        this.hashedBytes = hashedBytes;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the manifest of the scan inputs.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns the number of files in the manifest.
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of files that had to be read, as they were not in the index or had changed.
+     */
+    public int getHashedFiles() {
+        return hashedFiles;
+    }
+
+    /**
+     * Returns the number of bytes read to hash changed files.
+     */
+    public long getHashedBytes() {
+        return hashedBytes;
+    }
+
+    /**
+     * Returns the time it took to compute the fingerprint, in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.Action;
+import hudson.model.Run;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Records the fingerprint of the inputs of a successful scan, so that later builds with unchanged inputs
+ * can skip the scan and refer to the results of this one instead.
+ */
+public class SourceFingerprintAction implements Action {
+
+    /**
+     * The maximum number of previous builds searched for the last scan with the same build id and version
+     */
+    static final int MAX_BUILDS = Integer.getInteger(SourceFingerprintAction.class.getName() + ".maxBuilds", 50);
+
+    private final String buildId;
+    private final String versionId;
+    private final String digest;
+    private final String jobToken;
+    private final long started;
+    private final String reusedFrom;
+
+    /**
+     * Constructs a new SourceFingerprintAction.
+     * @param buildId the build id of the scan
+     * @param versionId the SSC project version the scan was uploaded to, or null
+     * @param digest the digest of the fingerprint
+     * @param jobToken the token of the CloudScan job, or null if it is not known
+     * @param started the time the scan started, in milliseconds
+     * @param reusedFrom the id of the build whose scan was reused, or null if the scan was performed
+     */
+    public SourceFingerprintAction(String buildId, String versionId, String digest, String jobToken, long started,
+                                   String reusedFrom) {
+        this.buildId = buildId;
+        this.versionId = versionId;
+        this.digest = digest;
+        this.jobToken = jobToken;
+        this.started = started;
+        this.reusedFrom = reusedFrom;
+    }
+
+    public String getBuildId() {
+        return buildId;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public String getJobToken() {
+        return jobToken;
+    }
+
+    /**
+     * Returns the time the scan whose results this build refers to started.
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * Returns the externalizable id of the build whose scan was reused, or null if this build performed the scan.
+     */
+    public String getReusedFrom() {
+        return reusedFrom;
+    }
+
+    /**
+     * Returns true if this action records a scan of the specified build id and project version.
+     */
+    boolean isFor(String buildId, String versionId) {
+        return StringUtils.equals(StringUtils.trimToNull(this.buildId), StringUtils.trimToNull(buildId))
+                && StringUtils.equals(StringUtils.trimToNull(this.versionId), StringUtils.trimToNull(versionId));
+    }
+
+    /**
+     * Returns the last successful scan of the specified build id and project version recorded by a build
+     * preceding the specified build, or null if there is none.
+     * @param build the current build
+     * @param buildId the build id of the scan
+     * @param versionId the SSC project version of the scan, or null
+     * @return the build and its action, or null
+     */
+    static Match findPrevious(Run<?, ?> build, String buildId, String versionId) {
+        Run<?, ?> previous = build.getPreviousBuild();
+        for (int i = 0; previous != null && i < MAX_BUILDS; i++) {
+            for (SourceFingerprintAction action : previous.getActions(SourceFingerprintAction.class)) {
+                if (action.isFor(buildId, versionId)) {
+                    return new Match(previous, action);
+                }
+            }
+            previous = previous.getPreviousBuild();
+        }
+        return null;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.SourceFingerprintAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * A previous build and the scan it recorded.
+     */
+    static final class Match {
+
+        private final Run<?, ?> build;
+        private final SourceFingerprintAction action;
+
+        Match(Run<?, ?> build, SourceFingerprintAction action) {
+            this.build = build;
+            this.action = action;
+        }
+
+        Run<?, ?> getBuild() {
+            return build;
+        }
+
+        SourceFingerprintAction getAction() {
+            return action;
+        }
+    }
+
+}
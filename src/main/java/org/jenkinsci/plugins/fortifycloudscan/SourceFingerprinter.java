@@ -0,0 +1,375 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Computes the {@link SourceFingerprint} of a workspace. Directories are walked in parallel and the
+ * content of every file is hashed with SHA-256. The hashes are persisted in an index next to the
+ * workspace, and a file whose size and modification time are unchanged since the index was written
+ * is not read again, so fingerprinting an unchanged workspace only costs a walk of the directory tree.
+ *
+ * Files modified shortly before the index was written are always hashed again, as a later change in
+ * the same tick of the file system clock would not be noticed otherwise. Symbolic links are recorded
+ * with their target and never followed. Version control metadata (the default excludes of Ant) is
+ * never part of the fingerprint.
+ */
+final class SourceFingerprinter {
+
+    /**
+     * The number of threads walking and hashing the workspace
+     */
+    static final int THREADS = Math.max(1, Integer.getInteger(SourceFingerprinter.class.getName() + ".threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    private static final int INDEX_VERSION = 1;
+    private static final long RACY_MILLIS = 2000;
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final Path root;
+    private final List<String> excludes;
+    private final Map<String, Entry> previous;
+    private final long previousTime;
+    private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger hashedFiles = new AtomicInteger();
+    private final AtomicLong hashedBytes = new AtomicLong();
+
+    private SourceFingerprinter(Path root, List<String> excludes, Map<String, Entry> previous, long previousTime) {
+        this.root = root;
+        this.excludes = excludes;
+        this.previous = previous;
+        this.previousTime = previousTime;
+    }
+
+    /**
+     * Computes the fingerprint of the specified directory and updates the index.
+     * @param workspace the directory containing the scan inputs
+     * @param index the file the hashes are persisted in
+     * @param excludes Ant style patterns of the files that are not part of the fingerprint
+     * @param configuration the settings of the scan, which are part of the fingerprint
+     * @return the fingerprint
+     * @throws IOException if the workspace cannot be read
+     */
+    static SourceFingerprint compute(File workspace, File index, List<String> excludes, List<String> configuration)
+            throws IOException {
+        final long start = System.currentTimeMillis();
+        final List<String> patterns = new ArrayList<String>(Arrays.asList(DirectoryScanner.getDefaultExcludes()));
+        for (String exclude : excludes) {
+            if (exclude.trim().length() > 0) {
+                patterns.add(exclude.trim());
+            }
+        }
+        final Map<String, Entry> previous = new HashMap<String, Entry>();
+        final long previousTime = readIndex(index, previous);
+        final SourceFingerprinter fingerprinter = new SourceFingerprinter(workspace.toPath(), patterns, previous, previousTime);
+        final ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            pool.invoke(fingerprinter.new DirectoryTask(workspace.toPath(), ""));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+        final Map<String, Entry> entries = new TreeMap<String, Entry>(fingerprinter.current);
+        writeIndex(index, entries, System.currentTimeMillis());
+
+        final MessageDigest digest = newDigest();
+        for (String setting : configuration) {
+            digest.update(String.valueOf(setting).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().hash);
+        }
+        return new SourceFingerprint(toHex(digest.digest()), entries.size(), fingerprinter.hashedFiles.get(),
+                fingerprinter.hashedBytes.get(), System.currentTimeMillis() - start);
+    }
+
+    private boolean isExcluded(String relativePath) {
+        for (String pattern : excludes) {
+            if (SelectorUtils.matchPath(pattern, relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a regular file, reusing the hash from the index if the file is unchanged.
+     */
+    private void addFile(Path file, String relativePath, BasicFileAttributes attributes) {
+        final long size = attributes.size();
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final Entry known = previous.get(relativePath);
+        if (known != null && known.size == size && known.modified == modified && modified < previousTime - RACY_MILLIS) {
+            current.put(relativePath, known);
+            return;
+        }
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = BUFFERS.get();
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+                hashedBytes.addAndGet(read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        hashedFiles.incrementAndGet();
+        current.put(relativePath, new Entry(size, modified, digest.digest()));
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the content of a file, or of the names and content of all
+     * files in a directory, in the order of their relative paths. Modification times are not part of the digest.
+     * @param location the file or directory
+     * @return the digest
+     * @throws IOException if the content cannot be read
+     */
+    static String hashContent(File location) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = BUFFERS.get();
+        if (location.isFile()) {
+            update(digest, location.toPath(), buffer);
+            return toHex(digest.digest());
+        }
+        if (!location.isDirectory()) {
+            throw new FileNotFoundException(location.getAbsolutePath());
+        }
+        final Path root = location.toPath();
+        final TreeMap<String, Path> files = new TreeMap<String, Path>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            final Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                final Path path = iterator.next();
+                if (Files.isRegularFile(path)) {
+                    files.put(root.relativize(path).toString().replace(File.separatorChar, '/'), path);
+                }
+            }
+        }
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            update(digest, file.getValue(), buffer);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file, byte[] buffer) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Records a symbolic link by its target.
+     */
+    private void addLink(Path link, String relativePath) {
+        try {
+            final byte[] target = ("link:" + Files.readSymbolicLink(link)).getBytes(StandardCharsets.UTF_8);
+            current.put(relativePath, new Entry(-1, -1, newDigest().digest(target)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the files of a directory and forks a task per subdirectory.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -6057236474290187155L;
+
+        private final transient Path directory;
+        private final String relativePath;
+
+        DirectoryTask(Path directory, String relativePath) {
+            this.directory = directory;
+            this.relativePath = relativePath;
+        }
+
+        @Override
+        protected void compute() {
+            final List<DirectoryTask> subdirectories = new ArrayList<DirectoryTask>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    final String childPath = relativePath + child.getFileName().toString();
+                    if (isExcluded(childPath)) {
+                        continue;
+                    }
+                    final BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isSymbolicLink()) {
+                        addLink(child, childPath);
+                    } else if (attributes.isDirectory()) {
+                        subdirectories.add(new DirectoryTask(child, childPath + "/"));
+                    } else if (attributes.isRegularFile()) {
+                        addFile(child, childPath, attributes);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    /**
+     * Reads the index into the specified map.
+     * @return the time the index was written, or 0 if there is no usable index
+     */
+    private static long readIndex(File index, Map<String, Entry> entries) {
+        if (!index.isFile()) {
+            return 0;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(index))))) {
+            if (input.readInt() != INDEX_VERSION) {
+                return 0;
+            }
+            final long written = input.readLong();
+            final int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                final String path = input.readUTF();
+                final long size = input.readLong();
+                final long modified = input.readLong();
+                final byte[] hash = new byte[input.readUnsignedByte()];
+                input.readFully(hash);
+                entries.put(path, new Entry(size, modified, hash));
+            }
+            return written;
+        } catch (IOException e) {
+            // A damaged index only means that every file is hashed again
+            entries.clear();
+            return 0;
+        }
+    }
+
+    /**
+     * Replaces the index with the specified entries. The index is written to a temporary file first,
+     * so a build that is interrupted never leaves a partial index behind.
+     */
+    private static void writeIndex(File index, Map<String, Entry> entries, long written) throws IOException {
+        final File directory = index.getAbsoluteFile().getParentFile();
+        FileUtils.forceMkdir(directory);
+        final File temp = File.createTempFile(index.getName(), ".tmp", directory);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+            output.writeInt(INDEX_VERSION);
+            output.writeLong(written);
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().size);
+                output.writeLong(entry.getValue().modified);
+                output.writeByte(entry.getValue().hash.length);
+                output.write(entry.getValue().hash);
+            }
+            output.close();
+            output = null;
+            Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            IOUtils.closeQuietly(output);
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The size, modification time and content hash of a file.
+     */
+    private static final class Entry {
+
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+
+        Entry(long size, long modified, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Queries SSC for the artifacts uploaded to a project version. The artifacts are retrieved as JSON from
+ * <tt>&lt;ssc&gt;/api/v1/projectVersions/&lt;id&gt;/artifacts</tt> with the scans they contain, so that an
+ * uploaded scan can be recognized by its build ID rather than by the time it was uploaded. The SOAP API
+ * does not relate snapshots to artifacts or build IDs. Artifacts are requested most recent first and paged
+ * until the artifacts uploaded before the scan are reached.
+ */
+public class SscArtifacts {
+
+    static final int PAGE_SIZE = Math.max(1, Integer.getInteger(SscArtifacts.class.getName() + ".pageSize", 50));
+
+    static final String PROCESSED = "PROCESS_COMPLETE";
+
+    private final String sscUrl;
+    private final String token;
+
+    /**
+     * Constructs a new SscArtifacts.
+     * @param sscUrl the URL to SSC
+     * @param token the token to authenticate with, either as shown by SSC or decoded
+     */
+    public SscArtifacts(String sscUrl, String token) {
+        this.sscUrl = sscUrl.replaceAll("/$", "");
+        this.token = encodeToken(token);
+    }
+
+    /**
+     * Returns the id of the most recent artifact of the specified project version, or 0 if it has none.
+     * @param versionId the id of the project version
+     * @throws IOException if SSC cannot be reached or does not know the project version
+     */
+    public long getLatestArtifactId(long versionId) throws IOException {
+        long latest = 0;
+        final JSONArray artifacts = getArtifacts(versionId, 0, 1);
+        for (int i = 0; i < artifacts.size(); i++) {
+            latest = Math.max(latest, artifacts.getJSONObject(i).optLong("id"));
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the most recent artifact of the specified project version that contains a scan with the specified
+     * build ID, or null if there is none. SSC only relates an artifact to its scans once it has processed it.
+     * @param versionId the id of the project version
+     * @param buildId the build ID of the scan
+     * @param afterId only artifacts with a greater id are considered, so that earlier scans with the same
+     *                build ID are not taken for the current one
+     * @throws IOException if SSC cannot be reached or does not know the project version
+     */
+    public Artifact findArtifact(long versionId, String buildId, long afterId) throws IOException {
+        for (int start = 0; ; start += PAGE_SIZE) {
+            final JSONArray artifacts = getArtifacts(versionId, start, PAGE_SIZE);
+            final Artifact found = selectArtifact(artifacts, buildId, afterId);
+            if (found != null || isLastPage(artifacts, afterId)) {
+                return found;
+            }
+        }
+    }
+
+    private JSONArray getArtifacts(long versionId, int start, int limit) throws IOException {
+        final HttpGet get = new HttpGet(sscUrl + "/api/v1/projectVersions/" + versionId
+                + "/artifacts?embed=scans&orderby=-id&start=" + start + "&limit=" + limit);
+        get.setHeader("Accept", "application/json");
+        get.setHeader("Authorization", "FortifyToken " + token);
+        final HttpClientContext context = HttpClientContext.create();
+        try (CloseableHttpResponse response = HttpTransport.getInstance().getClient().execute(get, context)) {
+            PluginMetrics.get().recordConnection(HttpTransport.isConnectionReused(context));
+            final int status = response.getStatusLine().getStatusCode();
+            final String body = (response.getEntity() != null)
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException("SSC returned HTTP status " + status + " for the artifacts of project version " + versionId);
+            }
+            return parseArtifacts(body);
+        }
+    }
+
+    /**
+     * Extracts the artifacts from the document returned by SSC.
+     */
+    static JSONArray parseArtifacts(String body) throws IOException {
+        try {
+            final JSONArray artifacts = JSONObject.fromObject(body).optJSONArray("data");
+            if (artifacts != null) {
+                return artifacts;
+            }
+        } catch (JSONException e) {
+            throw new IOException("SSC returned an invalid list of artifacts: " + StringUtils.abbreviate(body, 200), e);
+        }
+        throw new IOException("SSC did not return a list of artifacts: " + StringUtils.abbreviate(body, 200));
+    }
+
+    /**
+     * Returns the most recent artifact with an id greater than the specified one that contains a scan with
+     * the specified build ID, or null if there is none.
+     */
+    static Artifact selectArtifact(JSONArray artifacts, String buildId, long afterId) {
+        Artifact found = null;
+        for (int i = 0; i < artifacts.size(); i++) {
+            final JSONObject artifact = artifacts.getJSONObject(i);
+            final long id = artifact.optLong("id");
+            if (id <= afterId || (found != null && id <= found.getId()) || !containsScan(artifact, buildId)) {
+                continue;
+            }
+            found = new Artifact(id, artifact.optString("status", "").trim().toUpperCase(Locale.ENGLISH));
+        }
+        return found;
+    }
+
+    /**
+     * Returns true if no later page of the artifacts, which are ordered most recent first, can contain an
+     * artifact with an id greater than the specified one.
+     */
+    static boolean isLastPage(JSONArray artifacts, long afterId) {
+        if (artifacts.size() < PAGE_SIZE) {
+            return true;
+        }
+        for (int i = 0; i < artifacts.size(); i++) {
+            if (artifacts.getJSONObject(i).optLong("id") <= afterId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsScan(JSONObject artifact, String buildId) {
+        final JSONObject embedded = artifact.optJSONObject("_embed");
+        final JSONArray scans = (embedded != null) ? embedded.optJSONArray("scans") : null;
+        if (scans == null) {
+            return false;
+        }
+        for (int i = 0; i < scans.size(); i++) {
+            final JSONObject scan = scans.optJSONObject(i);
+            if (scan != null && buildId.equals(scan.optString("buildId", null))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the token in the form the REST API expects. SSC shows tokens Base64 encoded, while the
+     * SOAP API is also used with the decoded token, which is a UUID.
+     */
+    static String encodeToken(String token) {
+        final String trimmed = StringUtils.trimToEmpty(token);
+        if (trimmed.matches("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}")) {
+            return Base64.getEncoder().encodeToString(trimmed.getBytes(StandardCharsets.UTF_8));
+        }
+        return trimmed;
+    }
+
+    /**
+     * An artifact uploaded to a project version.
+     */
+    public static final class Artifact {
+
+        private final long id;
+        private final String status;
+
+        Artifact(long id, String status) {
+            this.id = id;
+            this.status = status;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Returns the processing status of the artifact in upper case, e.g. PROCESSING, PROCESS_COMPLETE,
+         * ERROR_PROCESSING or REQUIRE_AUTH.
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns true if SSC has processed the artifact and its issues are part of the project version.
+         */
+        public boolean isProcessed() {
+            return PROCESSED.equals(status);
+        }
+
+        /**
+         * Returns true if SSC will not process the artifact without further action.
+         */
+        public boolean isRejected() {
+            return status.contains("ERROR") || "REQUIRE_AUTH".equals(status);
+        }
+    }
+
+}
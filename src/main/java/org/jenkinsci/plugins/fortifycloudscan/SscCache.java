@@ -0,0 +1,216 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import com.fortifysoftware.schema.wsTypes.Project;
+import com.fortifysoftware.schema.wsTypes.ProjectVersionLite;
+import jenkins.util.Timer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller-side cache of the projects and project versions defined in SSC, used to populate
+ * the job configuration dropdowns without a SOAP round trip each time a configuration page is opened.
+ * Versions are held in a single index keyed by project id, built from one retrieval of the active
+ * version list, so selecting a project is a map lookup rather than a scan of every version in SSC.
+ * Values older than the TTL are still returned immediately while a refresh is performed in the
+ * background (stale-while-revalidate). Only the first request for a value that has never been
+ * loaded waits for SSC, and concurrent requests for the same value share a single load.
+ */
+public class SscCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SscCache.class.getName());
+
+    private final FortifySsc ssc;
+    private final String sscUrl;
+    private final String token;
+    private final long ttlMillis;
+
+    private final Loader<List<Project>> projects = new Loader<List<Project>>() {
+        @Override
+        List<Project> load() throws Exception {
+            return ssc.getProjects();
+        }
+    };
+
+    private final Loader<Map<Long, List<ProjectVersionLite>>> projectVersions = new Loader<Map<Long, List<ProjectVersionLite>>>() {
+        @Override
+        Map<Long, List<ProjectVersionLite>> load() throws Exception {
+            return ssc.getActiveProjectVersionIndex();
+        }
+    };
+
+    /**
+     * Constructs a new SscCache.
+     * @param ssc the SSC instance to query
+     * @param sscUrl the URL to SSC, used to determine if the cache is still valid for the global configuration
+     * @param token the token used to authenticate to SSC
+     * @param ttlMillis the time in milliseconds after which cached values are refreshed
+     */
+    public SscCache(FortifySsc ssc, String sscUrl, String token, long ttlMillis) {
+        this.ssc = ssc;
+        this.sscUrl = sscUrl;
+        this.token = token;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns true if this cache was created for the specified configuration.
+     */
+    public boolean isFor(String sscUrl, String token, long ttlMillis) {
+        return this.sscUrl.equals(sscUrl) && this.token.equals(token) && this.ttlMillis == ttlMillis;
+    }
+
+    /**
+     * Returns a list of all Project defined on SSC.
+     */
+    public List<Project> getProjects() throws Exception {
+        return projects.get();
+    }
+
+    /**
+     * Returns a list of all project versions for the specified project id defined on SSC.
+     */
+    public List<ProjectVersionLite> getActiveProjectVersions(long projectId) throws Exception {
+        final List<ProjectVersionLite> versions = projectVersions.get().get(projectId);
+        return (versions != null) ? versions : Collections.<ProjectVersionLite>emptyList();
+    }
+
+    /**
+     * Discards all cached values and immediately reloads the list of projects.
+     * The index of project versions is reloaded the next time versions are requested.
+     * @return the number of projects defined on SSC
+     */
+    public int refresh() throws Exception {
+        projects.clear();
+        projectVersions.clear();
+        return getProjects().size();
+    }
+
+    /**
+     * Holds a single cached value and the load in progress, if any. Every clear starts a new generation,
+     * and a load only stores its result if no clear happened since it started, so a background refresh
+     * that was already running cannot put back the data a refresh discarded.
+     */
+    private abstract class Loader<V> {
+
+        private volatile Value<V> value;
+
+        /**
+         * The load in progress and the generation of the value, guarded by this
+         */
+        private FutureTask<V> loading;
+        private long generation;
+
+        abstract V load() throws Exception;
+
+        V get() throws Exception {
+            final Value<V> current = value;
+            if (current == null) {
+                return loadNow();
+            }
+            if (System.currentTimeMillis() - current.loaded > ttlMillis && !isLoading()) {
+                Timer.get().submit(new Runnable() {
+                    public void run() {
+                        try {
+                            loadNow();
+                        } catch (Exception e) {
+                            LOGGER.log(Level.WARNING, "Unable to refresh data from SSC", e);
+                        }
+                    }
+                });
+            }
+            return current.value;
+        }
+
+        /**
+         * Loads the value, or waits for a load already in progress.
+         */
+        private V loadNow() throws Exception {
+            final FutureTask<V> task;
+            final boolean started;
+            synchronized (this) {
+                started = (loading == null);
+                if (started) {
+                    final long loadGeneration = generation;
+                    loading = new FutureTask<V>(new Callable<V>() {
+                        public V call() throws Exception {
+                            final V result = load();
+                            store(result, loadGeneration);
+                            return result;
+                        }
+                    });
+                }
+                task = loading;
+            }
+            try {
+                if (started) {
+                    task.run();
+                }
+                return task.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            } finally {
+                if (started) {
+                    synchronized (this) {
+                        if (loading == task) {
+                            loading = null;
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized boolean isLoading() {
+            return loading != null;
+        }
+
+        private synchronized void store(V result, long loadGeneration) {
+            if (generation == loadGeneration) {
+                value = new Value<V>(result);
+            }
+        }
+
+        /**
+         * Discards the value. A load in progress is not joined by later requests and does not store its result.
+         */
+        synchronized void clear() {
+            generation++;
+            value = null;
+            loading = null;
+        }
+    }
+
+    private static class Value<V> {
+
+        private final V value;
+        private final long loaded = System.currentTimeMillis();
+
+        Value(V value) {
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Result;
+import hudson.util.FormValidation;
+import org.apache.commons.lang.StringUtils;
+import org.apache.xmlbeans.XmlException;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import javax.xml.soap.SOAPException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails or marks the build unstable based on the number of issues SSC reports for the project version
+ * a scan was uploaded to. Once the scan has been submitted, SSC is polled with exponential backoff until
+ * it has processed the artifact containing the scan, recognized by its build ID and by an artifact id
+ * greater than that of the latest artifact before the submission (SSC numbers artifacts in upload order),
+ * so that neither the clocks of Jenkins and SSC nor other uploads to the version matter. The issues of the
+ * version are then counted page by page, so versions with any number of issues are evaluated in constant
+ * memory. The executor is held while waiting, so the timeout should not be much longer than SSC usually
+ * takes to process an upload.
+ *
+ * Thresholds are the maximum number of issues of a priority that is accepted; a blank threshold is not
+ * checked. Priorities are determined as for {@link FprSummary}.
+ */
+public class SscQualityGate extends AbstractDescribableImpl<SscQualityGate> implements Serializable {
+
+    private static final long serialVersionUID = 3094263519572103968L;
+
+    static final long INITIAL_DELAY = TimeUnit.SECONDS.toMillis(
+            Long.getLong(SscQualityGate.class.getName() + ".initialPollSeconds", 30));
+    static final long MAX_DELAY = TimeUnit.SECONDS.toMillis(
+            Long.getLong(SscQualityGate.class.getName() + ".maxPollSeconds", 300));
+    static final int MAX_FAILURES = Integer.getInteger(SscQualityGate.class.getName() + ".maxFailures", 10);
+    static final int PAGE_SIZE = Integer.getInteger(SscQualityGate.class.getName() + ".pageSize", 500);
+
+    static final int DEFAULT_TIMEOUT_MINUTES = 20;
+
+    private String failCritical;
+    private String failHigh;
+    private String failMedium;
+    private String failLow;
+    private String unstableCritical;
+    private String unstableHigh;
+    private String unstableMedium;
+    private String unstableLow;
+    private int timeoutMinutes = DEFAULT_TIMEOUT_MINUTES;
+
+    @DataBoundConstructor
+    public SscQualityGate() {
+    }
+
+    public String getFailCritical() {
+        return failCritical;
+    }
+
+    @DataBoundSetter
+    public void setFailCritical(String failCritical) {
+        this.failCritical = failCritical;
+    }
+
+    public String getFailHigh() {
+        return failHigh;
+    }
+
+    @DataBoundSetter
+    public void setFailHigh(String failHigh) {
+        this.failHigh = failHigh;
+    }
+
+    public String getFailMedium() {
+        return failMedium;
+    }
+
+    @DataBoundSetter
+    public void setFailMedium(String failMedium) {
+        this.failMedium = failMedium;
+    }
+
+    public String getFailLow() {
+        return failLow;
+    }
+
+    @DataBoundSetter
+    public void setFailLow(String failLow) {
+        this.failLow = failLow;
+    }
+
+    public String getUnstableCritical() {
+        return unstableCritical;
+    }
+
+    @DataBoundSetter
+    public void setUnstableCritical(String unstableCritical) {
+        this.unstableCritical = unstableCritical;
+    }
+
+    public String getUnstableHigh() {
+        return unstableHigh;
+    }
+
+    @DataBoundSetter
+    public void setUnstableHigh(String unstableHigh) {
+        this.unstableHigh = unstableHigh;
+    }
+
+    public String getUnstableMedium() {
+        return unstableMedium;
+    }
+
+    @DataBoundSetter
+    public void setUnstableMedium(String unstableMedium) {
+        this.unstableMedium = unstableMedium;
+    }
+
+    public String getUnstableLow() {
+        return unstableLow;
+    }
+
+    @DataBoundSetter
+    public void setUnstableLow(String unstableLow) {
+        this.unstableLow = unstableLow;
+    }
+
+    /**
+     * Retrieves the number of minutes to wait for SSC to process the uploaded scan.
+     */
+    public int getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(int timeoutMinutes) {
+        this.timeoutMinutes = (timeoutMinutes > 0) ? timeoutMinutes : DEFAULT_TIMEOUT_MINUTES;
+    }
+
+    /**
+     * Waits for SSC to process the scan and evaluates the thresholds against the issues of the project version.
+     * @param ssc the SSC instance the scan is uploaded to
+     * @param artifacts the artifacts of the SSC instance
+     * @param versionId the id of the project version
+     * @param buildId the build ID of the scan
+     * @param afterArtifactId the id of the latest artifact of the version before the scan was submitted, or -1
+     *                        to evaluate the latest artifact of the build ID, as for results that were reused
+     * @param logger the logger to report progress to
+     * @return the result of the gate, FAILURE if the issues could not be retrieved in time
+     */
+    Result evaluate(FortifySsc ssc, SscArtifacts artifacts, long versionId, String buildId, long afterArtifactId,
+                    ConsoleLogger logger) throws InterruptedException {
+        logger.log(Messages.qualityGate_waiting(versionId, buildId));
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        long delay = INITIAL_DELAY;
+        int failures = 0;
+        while (true) {
+            try {
+                final SscArtifacts.Artifact artifact = artifacts.findArtifact(versionId, buildId, afterArtifactId);
+                if (artifact != null && artifact.isRejected()) {
+                    logger.log("ERROR: " + Messages.qualityGate_rejected(artifact.getId(), artifact.getStatus()));
+                    return Result.FAILURE;
+                }
+                if (artifact != null && artifact.isProcessed()) {
+                    final FprSummary summary = ssc.countIssues(versionId, PAGE_SIZE);
+                    logger.log(Messages.qualityGate_issues(summary.getTotal(), summary.getCritical(), summary.getHigh(),
+                            summary.getMedium(), summary.getLow()));
+                    return check(summary, logger);
+                }
+                failures = 0;
+            } catch (SOAPException | IOException | XmlException | NoSuchFieldException | IllegalAccessException
+                    | FortifySscClientException e) {
+                if (++failures >= MAX_FAILURES) {
+                    logger.log("ERROR: " + Messages.qualityGate_failed(e.getMessage()));
+                    return Result.FAILURE;
+                }
+                logger.log("WARNING: " + Messages.qualityGate_failed(e.getMessage()));
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                logger.log("ERROR: " + Messages.qualityGate_timeout(timeoutMinutes));
+                return Result.FAILURE;
+            }
+            Thread.sleep(Math.min(delay, remaining));
+            delay = Math.min(delay * 2, MAX_DELAY);
+        }
+    }
+
+    /**
+     * Evaluates the thresholds against the specified counts.
+     */
+    Result check(FprSummary summary, ConsoleLogger logger) {
+        Result result = Result.SUCCESS;
+        result = result.combine(check(Messages.qualityGate_critical(), summary.getCritical(),
+                failCritical, unstableCritical, logger));
+        result = result.combine(check(Messages.qualityGate_high(), summary.getHigh(),
+                failHigh, unstableHigh, logger));
+        result = result.combine(check(Messages.qualityGate_medium(), summary.getMedium(),
+                failMedium, unstableMedium, logger));
+        result = result.combine(check(Messages.qualityGate_low(), summary.getLow(),
+                failLow, unstableLow, logger));
+        return result;
+    }
+
+    private static Result check(String priority, int count, String fail, String unstable, ConsoleLogger logger) {
+        final Integer failThreshold = parse(fail);
+        if (failThreshold != null && count > failThreshold) {
+            logger.log("ERROR: " + Messages.qualityGate_exceeded(count, priority, failThreshold));
+            return Result.FAILURE;
+        }
+        final Integer unstableThreshold = parse(unstable);
+        if (unstableThreshold != null && count > unstableThreshold) {
+            logger.log("WARNING: " + Messages.qualityGate_exceeded(count, priority, unstableThreshold));
+            return Result.UNSTABLE;
+        }
+        return Result.SUCCESS;
+    }
+
+    /**
+     * Returns the threshold, or null if it is blank or not a number.
+     */
+    private static Integer parse(String threshold) {
+        if (StringUtils.isBlank(threshold)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(threshold.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Extension @Symbol("sscQualityGate")
+    public static class DescriptorImpl extends Descriptor<SscQualityGate> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.SscQualityGate_DisplayName();
+        }
+
+        public FormValidation doCheckFailCritical(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckFailHigh(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckFailMedium(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckFailLow(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckUnstableCritical(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckUnstableHigh(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckUnstableMedium(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckUnstableLow(@QueryParameter String value) {
+            return checkThreshold(value);
+        }
+
+        public FormValidation doCheckTimeoutMinutes(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value.trim()) > 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error(Messages.qualityGate_invalidTimeout());
+            }
+            return FormValidation.error(Messages.qualityGate_invalidTimeout());
+        }
+
+        private FormValidation checkThreshold(String value) {
+            if (StringUtils.isBlank(value) || value.trim().matches("[0-9]+")) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error(Messages.qualityGate_invalidThreshold());
+        }
+    }
+
+}
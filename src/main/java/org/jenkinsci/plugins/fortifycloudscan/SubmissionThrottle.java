@@ -0,0 +1,408 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Limits the number of scans submitted to the same controller and sensor pool concurrently, across all
+ * builds of the Jenkins controller. Scans waiting for a submission are admitted strictly in the order they
+ * started waiting, so a burst of builds cannot starve an earlier one. A submission ends once the controller
+ * has accepted the job (or cloudscan has exited), not when the scan completes.
+ *
+ * A submission is admitted once fewer submissions are waiting ahead of it than are available.
+ *
+ * Builds of projects whose build steps are known wait in the build queue instead, without holding an
+ * executor (see {@link SubmissionThrottleDispatcher}). Their queue items take a ticket in the same line as
+ * the scans waiting in a build step, and are only started once the ticket would be admitted. The ticket keeps
+ * its place in the line while the build runs, and is admitted when the scan of the build claims it. Only then
+ * is the submission counted as running. A queue item waiting for several controllers or sensor pools takes
+ * all its tickets at once, so it is in the same position relative to other items in every line it waits in.
+ */
+public final class SubmissionThrottle {
+
+    private static final SubmissionThrottle INSTANCE = new SubmissionThrottle();
+
+    /**
+     * The lanes by controller and sensor pool, guarded by this
+     */
+    private final Map<String, Lane> lanes = new TreeMap<String, Lane>();
+    private int limit;
+
+    /**
+     * The queue item of scans that did not wait in the build queue
+     */
+    private static final long NO_ITEM = -1;
+
+    private SubmissionThrottle() {}
+
+    /**
+     * Returns the throttle of this controller.
+     */
+    public static SubmissionThrottle get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of concurrent submissions per controller and sensor pool.
+     * @param limit the maximum, or zero for no limit
+     */
+    public synchronized void setLimit(int limit) {
+        this.limit = Math.max(0, limit);
+        // Waiting submissions may be admitted under the new limit
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Waits until a submission to the specified controller and sensor pool is admitted. The ticket the queue item
+     * of the build took while it waited in the build queue is claimed, so the scan keeps its place in the line.
+     * @param controller the URL of the controller (or SSC) the scan is submitted to
+     * @param pool the sensor pool, or <tt>default</tt>
+     * @param item the ID of the queue item the build was started from, or a negative value if it is unknown
+     * @param logger the logger the wait is reported on
+     * @return the permit to release once the submission has ended
+     * @throws InterruptedException if the build is aborted while waiting
+     */
+    public synchronized Permit acquire(String controller, String pool, long item, ConsoleLogger logger) throws InterruptedException {
+        final Lane lane = lane(controller, pool);
+        Ticket ticket = (item >= 0) ? lane.find(item) : null;
+        if (ticket == null) {
+            ticket = new Ticket(NO_ITEM, System.currentTimeMillis());
+            lane.waiting.addLast(ticket);
+        }
+        boolean logged = false;
+        while (!isAdmissible(lane, ticket)) {
+            if (!logged) {
+                logger.log(Messages.throttle_waiting(lane.running, limit, controller, pool, lane.position(ticket)));
+                logged = true;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                lane.waiting.remove(ticket);
+                notifyAll();
+                throw e;
+            }
+        }
+        lane.waiting.remove(ticket);
+        lane.running++;
+        final Permit permit = admitted(lane, ticket);
+        if (logged) {
+            logger.log(Messages.throttle_admitted(permit.getWaited() / 1000));
+        }
+        // The next submission in line may be admitted as well
+        notifyAll();
+        return permit;
+    }
+
+    /**
+     * Takes the tickets of a queue item in the lines of the controllers and sensor pools it submits to, unless it
+     * already holds them. The tickets are kept until the scans of the build claim them, or they are released.
+     * @param item the ID of the queue item
+     * @param destinations the controllers and sensor pools the build submits scans to
+     * @return true if all tickets of the item would be admitted and the item may be started, otherwise false
+     */
+    public synchronized boolean enqueue(long item, Collection<Destination> destinations) {
+        if (limit <= 0) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        boolean admissible = true;
+        for (Destination destination : destinations) {
+            final Lane lane = lane(destination.controller, destination.pool);
+            Ticket ticket = lane.find(item);
+            if (ticket == null) {
+                ticket = new Ticket(item, now);
+                lane.waiting.addLast(ticket);
+            }
+            admissible &= isAdmissible(lane, ticket);
+        }
+        return admissible;
+    }
+
+    /**
+     * Removes the tickets of a queue item that were not claimed, as the item was cancelled or its build has
+     * completed.
+     * @param item the ID of the queue item
+     */
+    public synchronized void release(long item) {
+        for (Lane lane : lanes.values()) {
+            final Ticket ticket = lane.find(item);
+            if (ticket != null) {
+                lane.waiting.remove(ticket);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the statistics of every controller and sensor pool submitted to since the controller started.
+     */
+    public synchronized List<Stats> getStats() {
+        final long now = System.currentTimeMillis();
+        final List<Stats> stats = new ArrayList<Stats>();
+        for (Lane lane : lanes.values()) {
+            final Ticket oldest = lane.waiting.peekFirst();
+            stats.add(new Stats(lane.controller, lane.pool, lane.running, lane.waiting.size(), lane.admitted,
+                    (lane.admitted > 0) ? lane.totalWait / lane.admitted : 0, lane.maxWait,
+                    (oldest != null) ? now - oldest.enqueued : 0));
+        }
+        return stats;
+    }
+
+    private synchronized void release(Lane lane) {
+        lane.running--;
+        notifyAll();
+    }
+
+    /**
+     * Returns if fewer submissions are waiting ahead of the ticket than are available.
+     */
+    private boolean isAdmissible(Lane lane, Ticket ticket) {
+        return limit <= 0 || lane.position(ticket) < limit - lane.running;
+    }
+
+    private Permit admitted(Lane lane, Ticket ticket) {
+        final long waited = System.currentTimeMillis() - ticket.enqueued;
+        lane.admitted++;
+        lane.totalWait += waited;
+        lane.maxWait = Math.max(lane.maxWait, waited);
+        return new Permit(lane, waited);
+    }
+
+    private Lane lane(String controller, String pool) {
+        final String key = key(controller, pool);
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = new Lane(controller, pool);
+            lanes.put(key, lane);
+        }
+        return lane;
+    }
+
+    private static String key(String controller, String pool) {
+        return controller + "|" + pool;
+    }
+
+    /**
+     * The submissions to a controller and sensor pool.
+     */
+    private static final class Lane {
+
+        private final String controller;
+        private final String pool;
+
+        /**
+         * The waiting submissions, in the order they were enqueued, including those of builds that were started
+         * from the build queue and did not submit yet
+         */
+        private final Deque<Ticket> waiting = new ArrayDeque<Ticket>();
+        private int running;
+        private long admitted;
+        private long totalWait;
+        private long maxWait;
+
+        private Lane(String controller, String pool) {
+            this.controller = controller;
+            this.pool = pool;
+        }
+
+        /**
+         * Returns the waiting ticket of a queue item, or null if it has none.
+         */
+        private Ticket find(long item) {
+            for (Ticket ticket : waiting) {
+                if (ticket.item == item) {
+                    return ticket;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of waiting submissions ahead of the ticket.
+         */
+        private int position(Ticket ticket) {
+            int position = 0;
+            for (Ticket waiting : this.waiting) {
+                if (waiting == ticket) {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * A waiting submission. Tickets are compared by identity.
+     */
+    private static final class Ticket {
+
+        private final long item;
+        private final long enqueued;
+
+        private Ticket(long item, long enqueued) {
+            this.item = item;
+            this.enqueued = enqueued;
+        }
+    }
+
+    /**
+     * A controller and sensor pool a queue item waits to submit to.
+     */
+    public static final class Destination {
+
+        private final String controller;
+        private final String pool;
+
+        public Destination(String controller, String pool) {
+            this.controller = controller;
+            this.pool = pool;
+        }
+
+        public String getController() {
+            return controller;
+        }
+
+        public String getPool() {
+            return pool;
+        }
+    }
+
+    /**
+     * An admitted submission. Releasing it more than once has no effect.
+     */
+    public final class Permit {
+
+        private final Lane lane;
+        private final long waited;
+        private boolean released;
+
+        private Permit(Lane lane, long waited) {
+            this.lane = lane;
+            this.waited = waited;
+        }
+
+        /**
+         * Returns how long the submission waited to be admitted, in milliseconds.
+         */
+        public long getWaited() {
+            return waited;
+        }
+
+        /**
+         * Ends the submission, admitting the next one waiting for the same controller and sensor pool.
+         */
+        public void release() {
+            synchronized (SubmissionThrottle.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                SubmissionThrottle.this.release(lane);
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the submissions to a controller and sensor pool.
+     */
+    public static final class Stats {
+
+        private final String controller;
+        private final String pool;
+        private final int running;
+        private final int waiting;
+        private final long admitted;
+        private final long averageWait;
+        private final long maxWait;
+        private final long oldestWait;
+
+        Stats(String controller, String pool, int running, int waiting, long admitted, long averageWait, long maxWait,
+              long oldestWait) {
+            this.controller = controller;
+            this.pool = pool;
+            this.running = running;
+            this.waiting = waiting;
+            this.admitted = admitted;
+            this.averageWait = averageWait;
+            this.maxWait = maxWait;
+            this.oldestWait = oldestWait;
+        }
+
+        public String getController() {
+            return controller;
+        }
+
+        public String getPool() {
+            return pool;
+        }
+
+        /**
+         * Returns the number of submissions in progress.
+         */
+        public int getRunning() {
+            return running;
+        }
+
+        /**
+         * Returns the number of submissions waiting to be admitted.
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * Returns the number of submissions admitted since the controller started.
+         */
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * Returns the average time submissions waited to be admitted, in milliseconds.
+         */
+        public long getAverageWait() {
+            return averageWait;
+        }
+
+        /**
+         * Returns the longest time a submission waited to be admitted, in milliseconds.
+         */
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        /**
+         * Returns how long the first waiting submission has been waiting, in milliseconds.
+         */
+        public long getOldestWait() {
+            return oldestWait;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.Extension;
+import hudson.model.Project;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.tasks.Builder;
+import org.apache.commons.lang.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps builds of projects that submit scans in the build queue while the submissions to their controller
+ * and sensor pool are saturated, so they wait for {@link SubmissionThrottle} without holding an executor.
+ * The queue items wait in the same line as the scans waiting in a build step, and keep their place in it
+ * until the scans of the build submit. Only the build steps of freestyle projects are known before a
+ * build starts; Pipeline builds and sensor pools that are only known once variables are expanded wait in
+ * the build step instead.
+ */
+@Extension
+public class SubmissionThrottleDispatcher extends QueueTaskDispatcher {
+
+    @Override
+    public CauseOfBlockage canRun(Queue.Item item) {
+        if (!(item.task instanceof Project)) {
+            return null;
+        }
+        final SubmissionThrottle throttle = SubmissionThrottle.get();
+        if (throttle.getLimit() <= 0) {
+            return null;
+        }
+        final List<SubmissionThrottle.Destination> destinations = getDestinations((Project<?, ?>) item.task);
+        if (destinations.isEmpty() || throttle.enqueue(item.getId(), destinations)) {
+            return null;
+        }
+        final SubmissionThrottle.Destination first = destinations.get(0);
+        return CauseOfBlockage.fromMessage(Messages._throttle_blocked(first.getController(), first.getPool()));
+    }
+
+    /**
+     * Returns the controllers and sensor pools the build steps of the project submit scans to, with the sensor
+     * pools of parallel targets applied. Sensor pools that contain variables are only known once the build runs.
+     */
+    private static List<SubmissionThrottle.Destination> getDestinations(Project<?, ?> project) {
+        final List<SubmissionThrottle.Destination> destinations = new ArrayList<SubmissionThrottle.Destination>();
+        for (Builder builder : project.getBuilders()) {
+            if (builder instanceof FortifyCloudScanBuilder) {
+                addDestination(destinations, (FortifyCloudScanBuilder) builder, null);
+            } else if (builder instanceof FortifyCloudScanParallelBuilder) {
+                final FortifyCloudScanParallelBuilder parallel = (FortifyCloudScanParallelBuilder) builder;
+                if (parallel.getScan() != null) {
+                    for (ScanTarget target : parallel.getTargets()) {
+                        addDestination(destinations, parallel.getScan(), target.getSensorPool());
+                    }
+                }
+            }
+        }
+        return destinations;
+    }
+
+    private static void addDestination(List<SubmissionThrottle.Destination> destinations, FortifyCloudScanBuilder scan,
+                                       String targetPool) {
+        final String controller = scan.getControllerLabel();
+        final String pool = StringUtils.defaultIfBlank(StringUtils.defaultIfBlank(targetPool, scan.getSensorPool()), "default");
+        if (controller != null && !pool.contains("$")) {
+            destinations.add(new SubmissionThrottle.Destination(controller, pool));
+        }
+    }
+
+    /**
+     * Removes the tickets of queue items that are cancelled.
+     */
+    @Extension
+    public static class ItemListener extends QueueListener {
+
+        @Override
+        public void onLeft(Queue.LeftItem item) {
+            if (item.isCancelled()) {
+                SubmissionThrottle.get().release(item.getId());
+            }
+        }
+    }
+
+    /**
+     * Removes the tickets of a build that were not claimed by a scan, for instance because the build failed
+     * before submitting or the scan was skipped.
+     */
+    @Extension
+    public static class BuildListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(Run<?, ?> run, TaskListener listener) {
+            SubmissionThrottle.get().release(run.getQueueId());
+        }
+    }
+
+}
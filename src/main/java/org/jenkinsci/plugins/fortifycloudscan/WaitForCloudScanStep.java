@@ -0,0 +1,328 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Waits for a job submitted to the CloudScan controller to finish. The step does not require a
+ * node, so when it is used outside of a <tt>node</tt> block no executor is held while the remote
+ * sensors perform the scan. The controller is polled in the background with exponential backoff
+ * and polling resumes after a restart of Jenkins. The step fails if the job has not finished within
+ * the timeout.
+ *
+ * <pre>
+ * node {
+ *     fortifyCloudScan buildId: 'myapp', ...
+ * }
+ * waitForCloudScan()
+ * </pre>
+ */
+public class WaitForCloudScanStep extends Step implements Serializable {
+
+    private static final long serialVersionUID = -4309858104125186286L;
+    private static final Logger LOGGER = Logger.getLogger(WaitForCloudScanStep.class.getName());
+
+    static final long INITIAL_DELAY = TimeUnit.SECONDS.toMillis(
+            Long.getLong(WaitForCloudScanStep.class.getName() + ".initialPollSeconds", 10));
+    static final long MAX_DELAY = TimeUnit.SECONDS.toMillis(
+            Long.getLong(WaitForCloudScanStep.class.getName() + ".maxPollSeconds", 300));
+    static final int MAX_FAILURES = Integer.getInteger(WaitForCloudScanStep.class.getName() + ".maxFailures", 10);
+
+    static final int DEFAULT_TIMEOUT_MINUTES = 720;
+
+    private String token;
+    private int timeoutMinutes = DEFAULT_TIMEOUT_MINUTES;
+
+    @DataBoundConstructor
+    public WaitForCloudScanStep() {
+    }
+
+    /**
+     * Returns the token of the job to wait for. When not specified, the last job submitted by the build is used.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    @DataBoundSetter
+    public void setToken(String token) {
+        this.token = StringUtils.trimToNull(token);
+    }
+
+    /**
+     * Returns the number of minutes to wait for the job to finish.
+     */
+    public int getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(int timeoutMinutes) {
+        this.timeoutMinutes = (timeoutMinutes > 0) ? timeoutMinutes : DEFAULT_TIMEOUT_MINUTES;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, token, timeoutMinutes);
+    }
+
+    /**
+     * Polls the controller until the job has finished. Only serializable state is kept so the
+     * execution can be persisted with the Pipeline and resumed after a restart.
+     */
+    static class Execution extends StepExecution {
+
+        private static final long serialVersionUID = 2306419457361413591L;
+
+        private final String requestedToken;
+        private int timeoutMinutes;
+        private long deadline;
+        private String token;
+        private String controllerUrl;
+        private boolean upload;
+        private String state;
+        private long delay = INITIAL_DELAY;
+        private int failures;
+        private transient volatile ScheduledFuture<?> task;
+
+        /**
+         * Set once the step is stopped, so that a poll in progress does not schedule the next one
+         */
+        private transient volatile boolean stopped;
+
+        Execution(StepContext context, String token, int timeoutMinutes) {
+            super(context);
+            this.requestedToken = token;
+            this.timeoutMinutes = timeoutMinutes;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            final Run<?, ?> run = getContext().get(Run.class);
+            final CloudScanJobAction action = findAction(run, requestedToken);
+            if (action != null) {
+                token = action.getToken();
+                controllerUrl = action.getControllerUrl();
+                upload = action.isUpload();
+            } else if (requestedToken != null) {
+                // A job submitted outside of the build step, poll the controller from the global configuration
+                token = requestedToken;
+            } else {
+                throw new AbortException(Messages.waitForCloudScan_noJob());
+            }
+            log(Messages.waitForCloudScan_waiting(token));
+            deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes);
+            schedule(0);
+            return false;
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            stopped = true;
+            final ScheduledFuture<?> current = task;
+            if (current != null) {
+                current.cancel(false);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public void onResume() {
+            if (deadline == 0) {
+                // Persisted before the step had a timeout
+                timeoutMinutes = DEFAULT_TIMEOUT_MINUTES;
+                deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes);
+            }
+            schedule(0);
+        }
+
+        @Override
+        public String getStatus() {
+            return "waiting for CloudScan job " + token + (state != null ? " (" + state + ")" : "");
+        }
+
+        private void schedule(long delayMillis) {
+            if (stopped) {
+                return;
+            }
+            task = Timer.get().schedule(new Runnable() {
+                public void run() {
+                    poll();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Retrieves the state of the job once. Reschedules itself until the job has finished.
+         */
+        private void poll() {
+            if (stopped) {
+                return;
+            }
+            final String current;
+            try {
+                current = new CloudScanController(getControllerUrl()).getJobState(token);
+                failures = 0;
+            } catch (Exception e) {
+                if (++failures >= MAX_FAILURES) {
+                    getContext().onFailure(new AbortException(Messages.waitForCloudScan_pollFailed(token, e.getMessage())));
+                    return;
+                }
+                log("WARNING: " + Messages.waitForCloudScan_pollFailed(token, e.getMessage()));
+                reschedule();
+                return;
+            }
+            if (!current.equals(state)) {
+                state = current;
+                log(Messages.waitForCloudScan_state(token, state));
+                updateAction();
+            }
+            if (CloudScanController.isFailed(state)) {
+                ScanResultIndex.get().discard(token);
+                getContext().onFailure(new AbortException(Messages.waitForCloudScan_failed(token, state)));
+            } else if (CloudScanController.isCompleted(state, upload)) {
+                final FortifyCloudScanBuilder.DescriptorImpl descriptor =
+                        Jenkins.getInstance().getDescriptorByType(FortifyCloudScanBuilder.DescriptorImpl.class);
+                ScanResultIndex.get().complete(token, descriptor.getResultIndexTtlMillis(), descriptor.getResultIndexMaxEntries());
+                getContext().onSuccess(state);
+            } else {
+                reschedule();
+            }
+        }
+
+        private void reschedule() {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                getContext().onFailure(new AbortException(Messages.waitForCloudScan_timeout(token, timeoutMinutes)));
+                return;
+            }
+            final long next = delay;
+            delay = Math.min(delay * 2, MAX_DELAY);
+            schedule(Math.min(next, remaining));
+        }
+
+        /**
+         * Returns the controller URL recorded when the job was submitted or, for jobs submitted through
+         * SSC without a controller URL in the global configuration, the URL SSC is configured with.
+         */
+        private String getControllerUrl() throws Exception {
+            if (StringUtils.isBlank(controllerUrl)) {
+                final FortifyCloudScanBuilder.DescriptorImpl descriptor =
+                        Jenkins.getInstance().getDescriptorByType(FortifyCloudScanBuilder.DescriptorImpl.class);
+                if (StringUtils.isNotBlank(descriptor.getControllerUrl())) {
+                    controllerUrl = descriptor.getControllerUrl();
+                } else if (StringUtils.isNotBlank(descriptor.getSscUrl()) && StringUtils.isNotBlank(descriptor.getGlobalSscToken())) {
+                    controllerUrl = new FortifySsc(new URL(descriptor.getSscUrl() + "/fm-ws/services"),
+                            descriptor.getGlobalSscToken()).getCloudControllerUrl();
+                } else {
+                    throw new AbortException(Messages.unspecifiedUrl_controller());
+                }
+            }
+            return controllerUrl;
+        }
+
+        private void updateAction() {
+            try {
+                final Run<?, ?> run = getContext().get(Run.class);
+                final CloudScanJobAction action = findAction(run, token);
+                if (action != null) {
+                    action.setState(state);
+                }
+                // Timestamps are only as accurate as the polling interval
+                final ScanTimelineAction timelines = run.getAction(ScanTimelineAction.class);
+                final ScanTimeline timeline = (timelines != null) ? timelines.getTimeline(token) : null;
+                if (timeline != null) {
+                    timeline.enter(CloudScanController.getPhase(state, upload));
+                }
+                if (action != null || timeline != null) {
+                    run.save();
+                }
+            } catch (IOException | InterruptedException e) {
+                log("WARNING: Unable to record the state of CloudScan job " + token + ": " + e.getMessage());
+            }
+        }
+
+        private void log(String message) {
+            try {
+                new ConsoleLogger(getContext().get(TaskListener.class)).log(message);
+            } catch (IOException | InterruptedException e) {
+                LOGGER.log(Level.FINE, "Unable to log to the build: " + message, e);
+            }
+        }
+
+        /**
+         * Returns the action for the job with the specified token, or the last job submitted if token is null.
+         */
+        private static CloudScanJobAction findAction(Run<?, ?> run, String token) {
+            final List<CloudScanJobAction> actions = run.getActions(CloudScanJobAction.class);
+            if (token == null) {
+                return actions.isEmpty() ? null : actions.get(actions.size() - 1);
+            }
+            for (CloudScanJobAction action: actions) {
+                if (token.equals(action.getToken())) {
+                    return action;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            final Set<Class<?>> context = new HashSet<Class<?>>();
+            Collections.addAll(context, Run.class, TaskListener.class);
+            return Collections.unmodifiableSet(context);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "waitForCloudScan";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return Messages.waitForCloudScan_DisplayName();
+        }
+    }
+
+}
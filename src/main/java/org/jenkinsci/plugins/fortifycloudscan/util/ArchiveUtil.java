@@ -16,64 +16,196 @@
 package org.jenkinsci.plugins.fortifycloudscan.util;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 @SuppressFBWarnings(value = "RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
 public class ArchiveUtil {
 
+    /**
+     * The number of entries extracted concurrently from an archive. Defaults to the number of
+     * processors (up to 4) and can be raised on many-core nodes to trade CPU for wall time.
+     */
+    private static final int EXTRACT_THREADS = Math.max(1, Integer.getInteger(ArchiveUtil.class.getName() + ".extractThreads",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * The threads entries are extracted on, shared by all archives. Idle threads are discarded after a minute.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "FortifyCloudScan archive extractor"));
+
     private ArchiveUtil() {}
 
 
     public static void unzip(File directory, File zipFile) throws IOException {
-        if(!directory.exists()) {
-            directory.mkdirs();
+        try {
+            extract(directory, zipFile, EXTRACT_THREADS);
+        } catch (IOException e) {
+            throw new IOException(e);
         }
-        byte[] buffer = new byte[2048];
+    }
 
-        try (final FileInputStream fInput = new FileInputStream(zipFile);
-             final ZipInputStream zipInput = new ZipInputStream(fInput)) {
+    /**
+     * Extracts a ZIP archive using random access to its entries. Directories are created up-front
+     * and file entries are then written concurrently using the specified number of threads.
+     * @param directory the directory to extract the archive to
+     * @param zipFile the archive to extract
+     * @param threads the maximum number of entries to extract concurrently
+     * @throws IOException if the archive cannot be read or extracted
+     */
+    public static void extract(File directory, File zipFile, int threads) throws IOException {
+        final Path root = getRoot(directory);
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            final List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            final List<Path> targets = new ArrayList<Path>();
+            final Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                final ZipEntry entry = enumeration.nextElement();
+                final Path target = resolveEntry(root, entry);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    entries.add(entry);
+                    targets.add(target);
+                }
+            }
+            if (threads <= 1 || entries.size() <= 1) {
+                for (int i = 0; i < entries.size(); i++) {
+                    try (final InputStream input = zip.getInputStream(entries.get(i))) {
+                        write(input, targets.get(i));
+                    }
+                }
+            } else {
+                extractConcurrently(zip, entries, targets, threads);
+            }
+        }
+    }
 
+    /**
+     * Extracts a ZIP archive as it is read from the specified stream, without first writing
+     * the archive itself to disk. The stream is read to the end but is not closed.
+     * @param directory the directory to extract the archive to
+     * @param input the stream to read the archive from
+     * @param digest an optional MessageDigest that is updated with every byte of the archive, or null
+     * @throws IOException if the archive cannot be read or extracted
+     */
+    public static void unzip(File directory, InputStream input, MessageDigest digest) throws IOException {
+        final InputStream source = (digest != null) ? new DigestInputStream(input, digest) : input;
+        final Path root = getRoot(directory);
+        try (final ZipInputStream zipInput = new ZipInputStream(new CloseShieldInputStream(source))) {
             ZipEntry entry = zipInput.getNextEntry();
             while (entry != null) {
-                String entryName = entry.getName();
-                File file = new File(directory.getAbsolutePath() + File.separator + entryName);
-
-                // Validate against potentially malicious zip payload
-                // https://vulncat.fortify.com/en/detail?id=desc.controlflow.java.path_manipulation_zip_entry_overwrite
-                if (!file.getCanonicalPath().startsWith(directory.getCanonicalPath())) {
-                    throw new IOException("The archive contains an entry that would be extracted outside of the target directory.");
-                }
-
+                final Path target = resolveEntry(root, entry);
                 if (entry.isDirectory()) {
-                    File newDir = new File(file.getAbsolutePath());
-                    if (!newDir.exists()) {
-                        newDir.mkdirs();
-                    }
+                    Files.createDirectories(target);
                 } else {
-                    if (!file.getParentFile().isDirectory() && !file.getParentFile().exists()) {
-                        file.getParentFile().mkdirs();
-                    }
-                    try (FileOutputStream fOutput = new FileOutputStream(file)) {
-                        int count;
-                        while ((count = zipInput.read(buffer)) > 0) {
-                            fOutput.write(buffer, 0, count);
-                        }
-                    }
+                    Files.createDirectories(target.getParent());
+                    write(zipInput, target);
                 }
                 zipInput.closeEntry();
                 entry = zipInput.getNextEntry();
             }
-            zipInput.closeEntry();
-        } catch (IOException e) {
-            throw new IOException(e);
         }
+        // Consume the remainder of the archive (the central directory) so the digest covers all of it
+        IOUtils.copy(source, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    /**
+     * Extracts the entries on the shared executor. Each of at most the specified number of workers takes the
+     * next entry that is not extracted yet until all entries are extracted.
+     */
+    private static void extractConcurrently(final ZipFile zip, final List<ZipEntry> entries, final List<Path> targets,
+                                            int threads) throws IOException {
+        final AtomicInteger next = new AtomicInteger();
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < Math.min(threads, entries.size()); i++) {
+                futures.add(EXECUTOR.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        for (int index = next.getAndIncrement(); index < entries.size(); index = next.getAndIncrement()) {
+                            try (final InputStream input = zip.getInputStream(entries.get(index))) {
+                                write(input, targets.get(index));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting archive", e);
+        } finally {
+            // Stop the remaining workers before the archive is closed
+            next.set(entries.size());
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical path of the extraction directory, creating it if necessary.
+     * This is only computed once per archive; entries are validated against it lexically.
+     */
+    private static Path getRoot(File directory) throws IOException {
+        if(!directory.exists()) {
+            directory.mkdirs();
+        }
+        return directory.getCanonicalFile().toPath();
+    }
+
+    /**
+     * Resolves the location an entry will be extracted to.
+     * Validate against potentially malicious zip payload
+     * https://vulncat.fortify.com/en/detail?id=desc.controlflow.java.path_manipulation_zip_entry_overwrite
+     */
+    static Path resolveEntry(Path root, ZipEntry entry) throws IOException {
+        final Path target = root.resolve(entry.getName()).normalize();
+        if (!target.startsWith(root) || target.equals(root) && !entry.isDirectory()) {
+            throw new IOException("The archive contains an entry that would be extracted outside of the target directory.");
+        }
+        return target;
+    }
+
+    /**
+     * Copies the stream to the target file, replacing it if it exists.
+     */
+    private static void write(InputStream input, Path target) throws IOException {
+        Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
     }
 
 }
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan.util;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pooled, keep-alive HTTP transport shared by everything in the JVM that needs to make HTTP requests.
+ * A single instance exists per JVM, so connections opened by one build are reused by subsequent builds
+ * running on the same node. The transport is tuned with the following system properties:
+ * <ul>
+ *     <li><tt>org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport.connectTimeout</tt> - connect timeout in milliseconds (default 30000)</li>
+ *     <li><tt>org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport.readTimeout</tt> - socket read timeout in milliseconds (default 120000)</li>
+ *     <li><tt>org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport.maxPerRoute</tt> - maximum connections per host (default 8)</li>
+ *     <li><tt>org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport.maxTotal</tt> - maximum connections in total (default 32)</li>
+ *     <li><tt>org.jenkinsci.plugins.fortifycloudscan.util.HttpTransport.idleTimeout</tt> - seconds before idle connections are evicted (default 60)</li>
+ * </ul>
+ */
+public final class HttpTransport {
+
+    private static final String PROPERTY_PREFIX = HttpTransport.class.getName() + ".";
+
+    static final int CONNECT_TIMEOUT = Integer.getInteger(PROPERTY_PREFIX + "connectTimeout", 30000);
+    static final int READ_TIMEOUT = Integer.getInteger(PROPERTY_PREFIX + "readTimeout", 120000);
+    static final int MAX_PER_ROUTE = Integer.getInteger(PROPERTY_PREFIX + "maxPerRoute", 8);
+    static final int MAX_TOTAL = Integer.getInteger(PROPERTY_PREFIX + "maxTotal", 32);
+    static final int IDLE_TIMEOUT = Integer.getInteger(PROPERTY_PREFIX + "idleTimeout", 60);
+
+    private static final String CONNECTION_REUSED = PROPERTY_PREFIX + "connectionReused";
+
+    private final CloseableHttpClient client;
+
+    private HttpTransport() {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT)
+                .setSocketTimeout(READ_TIMEOUT)
+                .build();
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .addInterceptorLast(new ConnectionCounter())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Returns the transport shared by this JVM.
+     */
+    public static HttpTransport getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the pooled HTTP client. The client is shared and must not be closed by callers,
+     * however, responses obtained from it must always be closed so connections are returned to the pool.
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns true if the response to the request executed with the specified context was received over an
+     * existing, pooled connection, or false if a new connection was opened for the request.
+     */
+    public static boolean isConnectionReused(HttpContext context) {
+        return Boolean.TRUE.equals(context.getAttribute(CONNECTION_REUSED));
+    }
+
+    /**
+     * Inspects the connection a response was received on, while it is still bound to the request. A connection
+     * that has only ever carried a single request was opened for it, anything else was reused from the pool.
+     */
+    private static class ConnectionCounter implements HttpResponseInterceptor {
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            final HttpConnection connection = HttpClientContext.adapt(context).getConnection();
+            final HttpConnectionMetrics metrics = (connection != null) ? connection.getMetrics() : null;
+            context.setAttribute(CONNECTION_REUSED, metrics != null && metrics.getRequestCount() > 1);
+        }
+    }
+
+    private static class Holder {
+        private static final HttpTransport INSTANCE = new HttpTransport();
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Expands environment variables in the form <tt>${NAME}</tt> and <tt>$NAME</tt> contained in configuration
+ * values. An expander is created once per build from a single snapshot of the build environment and is then
+ * used for every field. Values are parsed into templates once per JVM and cached, so expanding the same
+ * configuration again only requires the variable lookups.
+ *
+ * A <tt>${NAME}</tt> that is not defined is an error, while an undefined <tt>$NAME</tt> is left as is so it
+ * can still be expanded by the shell cloudscan is launched with. Expanded values are not expanded again.
+ */
+public class VariableExpander {
+
+    private static final int MAX_TEMPLATES = 1024;
+    private static final ConcurrentMap<String, Template> TEMPLATES = new ConcurrentHashMap<String, Template>();
+
+    private final Map<String, String> env;
+
+    /**
+     * Constructs a new VariableExpander.
+     * @param env the environment of the build
+     */
+    public VariableExpander(Map<String, String> env) {
+        this.env = env;
+    }
+
+    /**
+     * Replaces all variables contained in the specified value with the value of the matching environment variable.
+     * @param value the value to expand, may be null
+     * @return the expanded value, or null if value was null
+     * @throws IllegalStateException if a variable in the form ${NAME} is not defined. The message is the name of the variable.
+     */
+    public String expand(String value) {
+        if (value == null || value.indexOf('$') < 0) {
+            return value;
+        }
+        return compile(value).expand(env);
+    }
+
+    /**
+     * Returns the template of the specified value, parsing it if it has not been seen before.
+     */
+    static Template compile(String value) {
+        Template template = TEMPLATES.get(value);
+        if (template == null) {
+            if (TEMPLATES.size() >= MAX_TEMPLATES) {
+                TEMPLATES.clear();
+            }
+            template = Template.parse(value);
+            TEMPLATES.putIfAbsent(value, template);
+        }
+        return template;
+    }
+
+    /**
+     * A value parsed into literal text and variable references.
+     */
+    static final class Template {
+
+        private final List<String> literals;
+        private final List<String> variables;
+        private final List<Boolean> braced;
+
+        private Template(List<String> literals, List<String> variables, List<Boolean> braced) {
+            this.literals = Collections.unmodifiableList(literals);
+            this.variables = Collections.unmodifiableList(variables);
+            this.braced = Collections.unmodifiableList(braced);
+        }
+
+        /**
+         * Parses the value. A '$' that does not start a variable reference (including an unterminated
+         * <tt>${</tt>) is kept as literal text.
+         */
+        static Template parse(String value) {
+            final List<String> literals = new ArrayList<String>();
+            final List<String> variables = new ArrayList<String>();
+            final List<Boolean> braced = new ArrayList<Boolean>();
+            final StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < value.length()) {
+                final char c = value.charAt(i);
+                if (c == '$' && i + 1 < value.length()) {
+                    if (value.charAt(i + 1) == '{') {
+                        final int end = value.indexOf('}', i + 2);
+                        if (end > i + 2) {
+                            literals.add(literal.toString());
+                            literal.setLength(0);
+                            variables.add(value.substring(i + 2, end));
+                            braced.add(Boolean.TRUE);
+                            i = end + 1;
+                            continue;
+                        }
+                    } else if (isNameStart(value.charAt(i + 1))) {
+                        int end = i + 2;
+                        while (end < value.length() && isNamePart(value.charAt(end))) {
+                            end++;
+                        }
+                        literals.add(literal.toString());
+                        literal.setLength(0);
+                        variables.add(value.substring(i + 1, end));
+                        braced.add(Boolean.FALSE);
+                        i = end;
+                        continue;
+                    }
+                }
+                literal.append(c);
+                i++;
+            }
+            literals.add(literal.toString());
+            return new Template(literals, variables, braced);
+        }
+
+        String expand(Map<String, String> env) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < variables.size(); i++) {
+                sb.append(literals.get(i));
+                final String name = variables.get(i);
+                final String value = env.get(name);
+                if (value != null) {
+                    sb.append(value);
+                } else if (braced.get(i)) {
+                    throw new IllegalStateException(name);
+                } else {
+                    sb.append('$').append(name);
+                }
+            }
+            sb.append(literals.get(variables.size()));
+            return sb.toString();
+        }
+
+        private static boolean isNameStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private static boolean isNamePart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+    }
+
+}
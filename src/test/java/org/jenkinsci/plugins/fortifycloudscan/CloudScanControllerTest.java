@@ -0,0 +1,62 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.junit.Test;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CloudScanControllerTest {
+
+    @Test
+    public void stateIsParsedFromAnyKnownKey() throws IOException {
+        assertEquals("SCAN_RUNNING", CloudScanController.parseState("{\"jobState\": \"scan_running\"}"));
+        assertEquals("PENDING", CloudScanController.parseState("{\"state\": \" Pending \"}"));
+        assertEquals("UPLOAD_COMPLETED", CloudScanController.parseState("{\"status\": \"UPLOAD_COMPLETED\"}"));
+        assertEquals("QUEUED", CloudScanController.parseState("{\"jobState\": \"\", \"state\": \"queued\"}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void documentWithoutStateIsRejected() throws IOException {
+        CloudScanController.parseState("{\"token\": \"0b6c1b2e\"}");
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidDocumentIsRejected() throws IOException {
+        CloudScanController.parseState("<html>Service Unavailable</html>");
+    }
+
+    @Test
+    public void uploadedJobsCompleteOnceUploaded() {
+        assertTrue(CloudScanController.isCompleted("SCAN_COMPLETED", false));
+        assertFalse(CloudScanController.isCompleted("SCAN_COMPLETED", true));
+        assertTrue(CloudScanController.isCompleted("UPLOAD_COMPLETED", true));
+        assertTrue(CloudScanController.isFinished("SCAN_CANCELED", true));
+        assertTrue(CloudScanController.isFailed("UPLOAD_FAILED"));
+    }
+
+    @Test
+    public void phaseFollowsTheState() {
+        assertEquals(ScanPhase.QUEUED, CloudScanController.getPhase("PENDING", false));
+        assertEquals(ScanPhase.SCAN, CloudScanController.getPhase("SCAN_RUNNING", false));
+        assertEquals(ScanPhase.SCAN, CloudScanController.getPhase("SCAN_COMPLETED", true));
+        assertEquals(ScanPhase.FINISHED, CloudScanController.getPhase("SCAN_COMPLETED", false));
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class FprSummarizerTest {
+
+    private static final String FVDL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<FVDL xmlns=\"xmlns://www.fortifysoftware.com/schema/fvdl\"><Vulnerabilities>"
+            + vulnerability("SQL Injection", null, "4.0", null, "5.0")
+            + vulnerability("SQL Injection", null, "4.0", null, "1.0")
+            + vulnerability("Cross-Site Scripting", "Reflected", "2.0", "3.0", "4.0")
+            + vulnerability("Poor Style", "Value Never Read", "1.0", null, "4.0")
+            + vulnerability("Dead Code", null, "1.0", null, "2.0")
+            + "</Vulnerabilities><Description><Abstract>Not counted</Abstract></Description>"
+            + vulnerability("After Vulnerabilities", null, "5.0", null, "5.0")
+            + "</FVDL>";
+
+    private static String vulnerability(String type, String subtype, String defaultSeverity, String instanceSeverity,
+                                        String confidence) {
+        return "<Vulnerability><ClassInfo><ClassID>1</ClassID><Type>" + type + "</Type>"
+                + (subtype != null ? "<Subtype>" + subtype + "</Subtype>" : "")
+                + "<DefaultSeverity>" + defaultSeverity + "</DefaultSeverity></ClassInfo><InstanceInfo>"
+                + (instanceSeverity != null ? "<InstanceSeverity>" + instanceSeverity + "</InstanceSeverity>" : "")
+                + "<Confidence>" + confidence + "</Confidence></InstanceInfo></Vulnerability>";
+    }
+
+    @Test
+    public void issuesAreCountedByPriority() throws IOException {
+        final FprSummary summary = summarize(FVDL);
+        assertEquals(5, summary.getTotal());
+        assertEquals(2, summary.getCritical());
+        assertEquals(1, summary.getHigh());
+        assertEquals(1, summary.getMedium());
+        assertEquals(1, summary.getLow());
+    }
+
+    @Test
+    public void issuesAreCountedByCategory() throws IOException {
+        final FprSummary summary = summarize(FVDL);
+        assertEquals(4, summary.getCategories().size());
+        assertEquals("SQL Injection", summary.getCategories().get(0).getName());
+        assertEquals(2, summary.getCategories().get(0).getCount());
+    }
+
+    @Test
+    public void categoryIncludesTheSubtype() {
+        assertEquals("Cross-Site Scripting: Reflected", FprSummarizer.category("Cross-Site Scripting", "Reflected"));
+        assertEquals("Dead Code", FprSummarizer.category("Dead Code", " "));
+        assertEquals("Unknown", FprSummarizer.category(null, "Reflected"));
+    }
+
+    @Test
+    public void invalidNumbersAreZero() {
+        assertEquals(0, FprSummarizer.parse("n/a"), 0);
+        assertEquals(3.5f, FprSummarizer.parse(" 3.5 "), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFvdlIsRejected() throws IOException {
+        summarize("<FVDL><Vulnerabilities><Vulnerability>");
+    }
+
+    private static FprSummary summarize(String fvdl) throws IOException {
+        try (InputStream input = new ByteArrayInputStream(fvdl.getBytes(StandardCharsets.UTF_8))) {
+            return FprSummarizer.summarize(input);
+        }
+    }
+
+}
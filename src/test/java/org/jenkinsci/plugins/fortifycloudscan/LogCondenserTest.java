@@ -0,0 +1,64 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogCondenserTest {
+
+    private static final String EOL = System.lineSeparator();
+
+    @Test
+    public void numbersAreReplaced() {
+        assertEquals("Uploading #%", LogCondenser.shape("Uploading 45%"));
+        assertEquals("Uploading #%", LogCondenser.shape("Uploading 100%"));
+        assertEquals("Job # of #: RUNNING", LogCondenser.shape("  Job 3 of 12: RUNNING "));
+        assertEquals("v#.#.#", LogCondenser.shape("v20.1.0"));
+        assertEquals("Job status: RUNNING", LogCondenser.shape("Job status: RUNNING"));
+    }
+
+    @Test
+    public void similarLinesAreSummarized() throws UnsupportedEncodingException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final LogCondenser condenser = new LogCondenser(new PrintStream(bytes, true, "UTF-8"), "> ");
+        condenser.line("Uploading 1%");
+        condenser.line("Uploading 2%");
+        condenser.line("Uploading 3%");
+        condenser.line("Upload complete");
+        condenser.line("Job status: RUNNING");
+        condenser.finish();
+        assertEquals("> Uploading 1%" + EOL
+                + "> " + Messages.condensed_similarLines(2, "Uploading 3%") + EOL
+                + "> Upload complete" + EOL
+                + "> Job status: RUNNING" + EOL, bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void secondSimilarLineIsNotSummarizedImmediately() throws UnsupportedEncodingException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final LogCondenser condenser = new LogCondenser(new PrintStream(bytes, true, "UTF-8"), "");
+        condenser.line("Job status: PENDING 1");
+        condenser.line("Job status: PENDING 2");
+        condenser.flush();
+        assertEquals("Job status: PENDING 1" + EOL, bytes.toString("UTF-8"));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SscArtifactsTest {
+
+    private static final String ARTIFACTS = "{\"data\": ["
+            + "{\"id\": 12, \"status\": \"PROCESSING\", \"_embed\": {\"scans\": []}},"
+            + "{\"id\": 11, \"status\": \"PROCESS_COMPLETE\", \"_embed\": {\"scans\": [{\"buildId\": \"other\"}]}},"
+            + "{\"id\": 10, \"status\": \"PROCESS_COMPLETE\", \"_embed\": {\"scans\": [{\"buildId\": \"myapp\"}]}},"
+            + "{\"id\": 7, \"status\": \"ERROR_PROCESSING\", \"_embed\": {\"scans\": [{\"buildId\": \"myapp\"}]}}"
+            + "], \"count\": 4}";
+
+    @Test
+    public void latestArtifactOfTheBuildIdIsSelected() throws IOException {
+        final SscArtifacts.Artifact artifact = SscArtifacts.selectArtifact(SscArtifacts.parseArtifacts(ARTIFACTS), "myapp", -1);
+        assertEquals(10, artifact.getId());
+        assertTrue(artifact.isProcessed());
+        assertFalse(artifact.isRejected());
+    }
+
+    @Test
+    public void artifactsUploadedBeforeTheScanAreIgnored() throws IOException {
+        final JSONArray artifacts = SscArtifacts.parseArtifacts(ARTIFACTS);
+        assertNull(SscArtifacts.selectArtifact(artifacts, "myapp", 10));
+        assertNull(SscArtifacts.selectArtifact(artifacts, "unknown", -1));
+        assertEquals(11, SscArtifacts.selectArtifact(artifacts, "other", 10).getId());
+    }
+
+    @Test
+    public void failedArtifactIsRejected() throws IOException {
+        final SscArtifacts.Artifact artifact = SscArtifacts.selectArtifact(SscArtifacts.parseArtifacts(
+                "{\"data\": [{\"id\": 7, \"status\": \"ERROR_PROCESSING\", \"_embed\": {\"scans\": [{\"buildId\": \"myapp\"}]}}]}"),
+                "myapp", 5);
+        assertFalse(artifact.isProcessed());
+        assertTrue(artifact.isRejected());
+    }
+
+    @Test
+    public void pagingStopsAtArtifactsUploadedBeforeTheScan() throws IOException {
+        final JSONArray page = new JSONArray();
+        for (int i = 0; i < SscArtifacts.PAGE_SIZE; i++) {
+            page.add(new JSONObject().element("id", 100 - i));
+        }
+        assertFalse(SscArtifacts.isLastPage(page, 100 - SscArtifacts.PAGE_SIZE));
+        assertTrue(SscArtifacts.isLastPage(page, 100 - SscArtifacts.PAGE_SIZE + 1));
+        assertTrue(SscArtifacts.isLastPage(SscArtifacts.parseArtifacts(ARTIFACTS), -1));
+    }
+
+    @Test(expected = IOException.class)
+    public void documentWithoutArtifactsIsRejected() throws IOException {
+        SscArtifacts.parseArtifacts("{\"message\": \"Access Denied\"}");
+    }
+
+    @Test
+    public void decodedTokenIsEncoded() {
+        assertEquals("NmI5ZTVmOWQtMWM0Yi00ZTc4LWE3ZGQtM2Y0ZTJhMWI5YzA4",
+                SscArtifacts.encodeToken("6b9e5f9d-1c4b-4e78-a7dd-3f4e2a1b9c08"));
+        assertEquals("NmI5ZTVmOWQtMWM0Yi00ZTc4LWE3ZGQtM2Y0ZTJhMWI5YzA4",
+                SscArtifacts.encodeToken("NmI5ZTVmOWQtMWM0Yi00ZTc4LWE3ZGQtM2Y0ZTJhMWI5YzA4"));
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan;
+
+import hudson.model.TaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubmissionThrottleTest {
+
+    private static final String CONTROLLER = "https://controller.example.com/cloud-ctrl";
+
+    private final SubmissionThrottle throttle = SubmissionThrottle.get();
+    private String pool;
+    private List<SubmissionThrottle.Destination> destinations;
+
+    @Before
+    public void setUp() {
+        // The throttle is shared, so every test uses a lane of its own
+        pool = "pool-" + System.nanoTime();
+        destinations = Collections.singletonList(new SubmissionThrottle.Destination(CONTROLLER, pool));
+        throttle.setLimit(1);
+    }
+
+    @After
+    public void tearDown() {
+        throttle.setLimit(0);
+    }
+
+    @Test
+    public void queuedItemsAreAdmittedInOrder() {
+        assertTrue(throttle.enqueue(1, destinations));
+        assertFalse(throttle.enqueue(2, destinations));
+        assertFalse(throttle.enqueue(3, destinations));
+        throttle.release(1);
+        assertFalse(throttle.enqueue(3, destinations));
+        assertTrue(throttle.enqueue(2, destinations));
+        assertEquals(0, getStats().getRunning());
+        assertEquals(2, getStats().getWaiting());
+    }
+
+    @Test
+    public void startedItemRunsOnceItClaimsItsTicket() throws InterruptedException {
+        assertTrue(throttle.enqueue(4, destinations));
+        assertTrue(throttle.enqueue(4, destinations));
+        assertEquals(0, getStats().getRunning());
+        final SubmissionThrottle.Permit permit = throttle.acquire(CONTROLLER, pool, 4, new ConsoleLogger(TaskListener.NULL));
+        assertEquals(1, getStats().getRunning());
+        assertEquals(0, getStats().getWaiting());
+        permit.release();
+        permit.release();
+        assertEquals(0, getStats().getRunning());
+        assertEquals(1, getStats().getAdmitted());
+    }
+
+    @Test
+    public void stepWaitsBehindQueuedItems() throws InterruptedException {
+        assertTrue(throttle.enqueue(5, destinations));
+        assertFalse(throttle.enqueue(6, destinations));
+        final Thread step = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    throttle.acquire(CONTROLLER, pool, -1, new ConsoleLogger(TaskListener.NULL)).release();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        step.start();
+        waitForWaiting(3);
+        throttle.release(5);
+        assertTrue(throttle.enqueue(6, destinations));
+        step.join(500);
+        assertTrue("The step must wait behind the queued item", step.isAlive());
+        throttle.release(6);
+        step.join(10000);
+        assertFalse(step.isAlive());
+        assertEquals(0, getStats().getRunning());
+    }
+
+    @Test
+    public void cancelledItemLeavesTheLine() {
+        assertTrue(throttle.enqueue(7, destinations));
+        assertFalse(throttle.enqueue(8, destinations));
+        assertFalse(throttle.enqueue(9, destinations));
+        throttle.release(8);
+        throttle.release(7);
+        assertTrue(throttle.enqueue(9, destinations));
+    }
+
+    private void waitForWaiting(int waiting) throws InterruptedException {
+        for (int i = 0; i < 1000 && getStats().getWaiting() < waiting; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(waiting, getStats().getWaiting());
+    }
+
+    private SubmissionThrottle.Stats getStats() {
+        for (SubmissionThrottle.Stats stats : throttle.getStats()) {
+            if (stats.getController().equals(CONTROLLER) && stats.getPool().equals(pool)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No submissions to " + pool);
+    }
+
+}
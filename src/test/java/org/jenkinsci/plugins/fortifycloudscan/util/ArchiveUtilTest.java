@@ -0,0 +1,65 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan.util;
+
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ArchiveUtilTest {
+
+    private final Path root = Paths.get("target", "extract").toAbsolutePath().normalize();
+
+    @Test
+    public void entriesResolveBelowTheRoot() throws IOException {
+        assertEquals(root.resolve("rules/core.bin"), ArchiveUtil.resolveEntry(root, new ZipEntry("rules/core.bin")));
+        assertEquals(root.resolve("core.bin"), ArchiveUtil.resolveEntry(root, new ZipEntry("rules/../core.bin")));
+        assertEquals(root, ArchiveUtil.resolveEntry(root, new ZipEntry("./")));
+    }
+
+    @Test
+    public void parentEntriesAreRejected() {
+        assertRejected("../core.bin");
+        assertRejected("rules/../../core.bin");
+        assertRejected("../" + root.getFileName() + "-other/core.bin");
+    }
+
+    @Test
+    public void absoluteEntriesAreRejected() {
+        assertRejected("/tmp/core.bin");
+        assertRejected(root.getParent().resolve("core.bin").toString());
+    }
+
+    @Test
+    public void fileEntryForTheRootIsRejected() {
+        assertRejected(".");
+    }
+
+    private void assertRejected(String name) {
+        try {
+            ArchiveUtil.resolveEntry(root, new ZipEntry(name));
+            fail("The entry " + name + " must be rejected");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+}
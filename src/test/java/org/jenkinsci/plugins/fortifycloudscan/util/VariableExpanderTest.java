@@ -0,0 +1,94 @@
+/*
+ * This file is part of Fortify CloudScan Jenkins plugin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fortifycloudscan.util;
+
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class VariableExpanderTest {
+
+    private final VariableExpander expander = new VariableExpander(env());
+
+    private static Map<String, String> env() {
+        final Map<String, String> env = new HashMap<String, String>();
+        env.put("BUILD_NUMBER", "42");
+        env.put("JOB_NAME", "myapp");
+        env.put("POOL", "$NOT_EXPANDED");
+        return env;
+    }
+
+    @Test
+    public void bracedAndPlainVariablesAreExpanded() {
+        assertEquals("myapp-42", expander.expand("${JOB_NAME}-$BUILD_NUMBER"));
+        assertEquals("build 42.", expander.expand("build $BUILD_NUMBER."));
+        assertEquals("myapp42", expander.expand("$JOB_NAME$BUILD_NUMBER"));
+    }
+
+    @Test
+    public void valuesWithoutVariablesAreReturnedAsIs() {
+        assertNull(expander.expand(null));
+        assertEquals("", expander.expand(""));
+        assertEquals("plain", expander.expand("plain"));
+    }
+
+    @Test
+    public void undefinedPlainVariableIsKept() {
+        assertEquals("$UNDEFINED/42", expander.expand("$UNDEFINED/$BUILD_NUMBER"));
+    }
+
+    @Test
+    public void undefinedBracedVariableIsAnError() {
+        try {
+            expander.expand("${UNDEFINED}");
+            fail("An undefined ${NAME} must not be expanded");
+        } catch (IllegalStateException e) {
+            assertEquals("UNDEFINED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void dollarsThatDoNotStartAVariableAreLiteral() {
+        assertEquals("cost $5 $", expander.expand("cost $5 $"));
+        assertEquals("${JOB_NAME", expander.expand("${JOB_NAME"));
+        assertEquals("${}", expander.expand("${}"));
+    }
+
+    @Test
+    public void expandedValuesAreNotExpandedAgain() {
+        assertEquals("$NOT_EXPANDED", expander.expand("${POOL}"));
+    }
+
+    @Test
+    public void templatesAreShared() {
+        assertEquals("other-7", new VariableExpander(variables("JOB_NAME", "other", "BUILD_NUMBER", "7"))
+                .expand("${JOB_NAME}-$BUILD_NUMBER"));
+        assertEquals("myapp-42", expander.expand("${JOB_NAME}-$BUILD_NUMBER"));
+    }
+
+    private static Map<String, String> variables(String... pairs) {
+        final Map<String, String> env = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            env.put(pairs[i], pairs[i + 1]);
+        }
+        return env;
+    }
+
+}